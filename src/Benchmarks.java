@@ -0,0 +1,653 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+// Timings of each day's solvers on generated inputs of growing size. These are skipped in a normal test run;
+// they only run when given the sizes to try, e.g. run this class with -Dbenchmark.sizes=1000,100000,1000000
+// (1000 makes a quick smoke run) to see how each solver grows with its input.
+@EnabledIfSystemProperty(named = "benchmark.sizes", matches = ".+")
+public class Benchmarks {
+
+    private static final String SIZES_PROPERTY = "benchmark.sizes";
+
+    private static final long SEED = 2022L;
+    private static final int WARMUPS = 2;
+    private static final int ITERATIONS = 5;
+
+    // Results are written here so the JIT can't throw away the work we are trying to time
+    private static volatile Object sink;
+
+    private final Map<String, String> generated = new HashMap<>();
+
+    @Test
+    public void day1() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day1", n, this::writeCalories);
+            measure("Day1.Counter", n, () -> new Day1().new Counter(MappedInput.open(input)).getBestThree());
+            measure("Day1.countInParallel", n, () -> new Day1().countInParallel(MappedInput.open(input)).getBestThree());
+        }
+    }
+
+    @Test
+    public void day2() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day2", n, this::writeStrategyGuide);
+            measure("Day2.getSum", n, () -> new Day2().getSum(input));
+            measure("Day2.getPart2Sum", n, () -> new Day2().getPart2Sum(input));
+        }
+    }
+
+    @Test
+    public void day3() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day3", n, this::writeRucksacks);
+            measure("Day3.getSumFor", n, () -> new Day3().getSumFor(input));
+            measure("Day3.getBadgesSumFor", n, () -> new Day3().getBadgesSumFor(input));
+        }
+    }
+
+    @Test
+    public void day4() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day4", n, this::writeAssignments);
+            Day4 day4 = new Day4();
+            measure("Day4.countFullyOverlappingPairs", n, () -> day4.countFullyOverlappingPairs(day4.parsePairs(input)));
+            measure("Day4.countOverlappingPairs", n, () -> day4.countOverlappingPairs(day4.parsePairs(input)));
+            measure("Day4.IntervalIndex", n, () -> day4.new IntervalIndex(day4.parsePairs(input)).countAllOverlappingPairs());
+        }
+    }
+
+    @Test
+    public void day5() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day5", n, this::writeCrateMoves);
+            measure("Day5.process", n, () -> new Day5().process(input));
+            measure("Day5.processWith9001", n, () -> new Day5().processWith9001(input));
+        }
+    }
+
+    @Test
+    public void day6() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day6", n, this::writeSignal);
+            String signal = readFirstLine(input);
+            measure("Day6.getStartOfMessageOffset", n, () -> new Day6().getStartOfMessageOffset(signal, 14));
+            measure("Day6.scan", n, () -> {
+                long[] markers = new long[1];
+                try (FileInputStream in = new FileInputStream(input)) {
+                    new Day6().scan(in, 14, offset -> markers[0]++);
+                }
+                return markers[0];
+            });
+        }
+    }
+
+    @Test
+    public void day7() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day7", n, this::writeTerminalLog);
+            measure("Day7.getSumOfFoldersSizesUnder", n, () -> new Day7().getSumOfFoldersSizesUnder(input));
+            measure("Day7.dirToDelete", n, () -> new Day7().dirToDelete(input));
+        }
+    }
+
+    @Test
+    public void day8() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day8", n, this::writeForest);
+            Day8 day8 = new Day8();
+            measure("Day8.findVisible", n, () -> day8.findVisible(day8.loadGrid(input)));
+            measure("Day8.findBestScenicScore", n, () -> day8.findBestScenicScore(day8.loadGrid(input)));
+        }
+    }
+
+    @Test
+    public void day9() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day9", n, this::writeRopeMoves);
+            Day9 day9 = new Day9();
+            measure("Day9.countTailVisits(2)", n, () -> day9.countTailVisits(day9.loadMovesFile(input), 2));
+            measure("Day9.countTailVisits(10)", n, () -> day9.countTailVisits(day9.loadMovesFile(input), 10));
+            measure("Day9.visitsByLength(10)", n, () -> day9.visitsByLength(day9.loadMovesFile(input), 10));
+        }
+    }
+
+    @Test
+    public void day10() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day10", n, this::writeProgram);
+            measure("Day10.trace", n, () -> new Day10().trace(input));
+            Day10 day10 = new Day10();
+            Day10.RegisterTrace trace = day10.trace(input);
+            measure("Day10.Crt.render", n, () -> day10.new Crt(40, 6, Day10.Crt.Format.PBM)
+                    .render(trace, Channels.newChannel(OutputStream.nullOutputStream())));
+        }
+    }
+
+    @Test
+    public void day11() throws Exception {
+        // Monkey count is fixed by the puzzle; rounds are the thing which grows
+        for (int n : sizes()) {
+            Day11 day11 = new Day11();
+            measure("Day11.getMoneyBusiness", n, () -> {
+                List<Day11.Monkey> monkeys = day11.parseInput("day11-actual.txt");
+                return day11.getMoneyBusiness(monkeys, n, day11.makeReduceByMultipleOfTestsFor(monkeys));
+            });
+            measure("Day11.countInspectionsByItem", n, () -> day11.countInspectionsByItem(day11.parseInput("day11-actual.txt"), n));
+        }
+    }
+
+    @Test
+    public void day12() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day12", n, this::writeHeightmap);
+            Day12 day12 = new Day12();
+            char[][] grid = day12.loadGrid(input);
+            measure("Day12.getShortestPathsFor", n, () -> day12.getShortestPathsFor(grid, day12.getElement(grid, 'E')));
+            measure("Day12.getBestDownTo", n, () -> day12.getBestDownTo(grid));
+            try {
+                measure("Day12.ReachabilityIndex", n, () -> day12.new ReachabilityIndex(grid));
+            } catch (IllegalStateException tooBig) {
+                System.out.printf("%-45s n=%-10d skipped: %s%n", "Day12.ReachabilityIndex", n, tooBig.getMessage());
+            }
+            Day12.PathFinder finder = day12.new PathFinder(grid);
+            for (Day12.Mode mode : Day12.Mode.values()) {
+                measure("Day12.PathFinder." + mode, n, () -> finder.find(day12.getElement(grid, 'S'), day12.getElement(grid, 'E'), mode));
+            }
+        }
+    }
+
+    @Test
+    public void day13() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day13", n, this::writePacketPairs);
+            Day13 day13 = new Day13();
+            measure("Day13.sumFor", n, () -> day13.sumFor(input));
+            measure("Day13.decode", n, () -> day13.decode(input));
+            measure("Day13.decodeBySorting(parallel)", n, () -> day13.decodeBySorting(input, true));
+        }
+    }
+
+    @Test
+    public void day14() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day14", n, this::writeRockTraces);
+            Day14 day14 = new Day14();
+            // Part 2 has a floor so it always terminates; random traces can trap part 1's sand under the source forever
+            measure("Day14.simulatePart2", n, () -> day14.simulatePart2(day14.loadFile(input)));
+        }
+    }
+
+    @Test
+    public void day15() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day15", n, this::writeSensors);
+            Day15 day15 = new Day15();
+            measure("Day15.sweep", n, () -> day15.sweep(day15.parseFile(input), SENSOR_ROW));
+        }
+    }
+
+    @Test
+    public void day16() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day16", n, this::writeValves);
+            measure("Day16.findBestOutcomeFor", n, () -> {
+                Day16 day16 = new Day16();
+                day16.flowRates = new HashMap<>();
+                return day16.findBestOutcomeFor(day16.parseGraph(input));
+            });
+        }
+    }
+
+    @Test
+    public void day17() throws Exception {
+        // The jet pattern stays the same; the number of rocks dropped is the thing which grows
+        for (int n : sizes()) {
+            measure("Day17.buildStack", n, () -> new Day17().buildStack("day17-actual.txt", n));
+        }
+    }
+
+    @Test
+    public void day18() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day18", n, this::writeCubes);
+            Day18 day18 = new Day18();
+            measure("Day18.getInternalAndExternalSurfaceAreaOf", n, () -> day18.getInternalAndExternalSurfaceAreaOf(day18.parseFile(input)));
+            measure("Day18.getExternalSurfaceArea", n, () -> day18.getExternalSurfaceArea(day18.parseFile(input)));
+        }
+    }
+
+    @Test
+    public void day20() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day20", n, this::writeEncryptedFile);
+            Day20 day20 = new Day20();
+            List<BigInteger> numbers = day20.parseInput(input);
+            measure("Day20.mix", n, () -> day20.decode(day20.mix(numbers, 1)));
+        }
+    }
+
+    @Test
+    public void day21() throws Exception {
+        for (int n : sizes()) {
+            String input = generate("day21", n, this::writeMonkeyTree);
+            Day21 day21 = new Day21();
+            measure("Day21.findPart1RootValue", n, () -> day21.findPart1RootValue(day21.parseInput(input)));
+        }
+    }
+
+    private void measure(String name, int n, Callable<Object> work) throws Exception {
+        for (int i = 0; i < WARMUPS; i++) {
+            sink = work.call();
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            sink = work.call();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        System.out.printf("%-45s n=%-10d best %10.3f ms  mean %10.3f ms%n", name, n, best / 1e6, total / 1e6 / ITERATIONS);
+    }
+
+    private int[] sizes() {
+        return Arrays.stream(System.getProperty(SIZES_PROPERTY).split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    // Generated inputs are written once per day and size; every generator is seeded so runs are comparable.
+    private String generate(String day, int n, Generator generator) throws IOException {
+        String key = day + "-" + n;
+        String existing = generated.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        File file = File.createTempFile(key + "-", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            generator.write(out, new Random(SEED), n);
+        }
+        generated.put(key, file.getPath());
+        return file.getPath();
+    }
+
+    private String readFirstLine(String filename) throws IOException {
+        try (BufferedReader input = new BufferedReader(new FileReader(filename))) {
+            return input.readLine();
+        }
+    }
+
+    private int sideOf(int n) {
+        return Math.max(2, (int) Math.sqrt(n));
+    }
+
+    interface Generator {
+        void write(PrintWriter out, Random random, int n);
+    }
+
+    // n groups of snacks separated by blank lines
+    private void writeCalories(PrintWriter out, Random random, int n) {
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                out.println();
+            }
+            int items = 1 + random.nextInt(10);
+            for (int j = 0; j < items; j++) {
+                out.println(1000 + random.nextInt(9000));
+            }
+        }
+    }
+
+    // n rounds
+    private void writeStrategyGuide(PrintWriter out, Random random, int n) {
+        for (int i = 0; i < n; i++) {
+            out.print((char) ('A' + random.nextInt(3)));
+            out.print(' ');
+            out.println((char) ('X' + random.nextInt(3)));
+        }
+    }
+
+    // n rucksacks in groups of three; each group shares exactly one badge which is also each rucksack's duplicate.
+    // The other 51 item types are split into three pools, one per elf, and each pool split again into left and right
+    // halves so no other item can be duplicated.
+    private void writeRucksacks(PrintWriter out, Random random, int n) {
+        String items = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        int groups = Math.max(1, n / 3);
+        for (int g = 0; g < groups; g++) {
+            char badge = items.charAt(random.nextInt(items.length()));
+            List<Character> others = new ArrayList<>();
+            for (char c : items.toCharArray()) {
+                if (c != badge) {
+                    others.add(c);
+                }
+            }
+            Collections.shuffle(others, random);
+            for (int elf = 0; elf < 3; elf++) {
+                List<Character> pool = others.subList(elf * 17, (elf + 1) * 17);
+                int half = 4 + random.nextInt(12);
+                StringBuilder left = new StringBuilder().append(badge);
+                StringBuilder right = new StringBuilder().append(badge);
+                for (int i = 1; i < half; i++) {
+                    left.append(pool.get(random.nextInt(8)));
+                    right.append(pool.get(8 + random.nextInt(9)));
+                }
+                out.println(left.toString() + right);
+            }
+        }
+    }
+
+    // n pairs of section assignments
+    private void writeAssignments(PrintWriter out, Random random, int n) {
+        for (int i = 0; i < n; i++) {
+            int a = 1 + random.nextInt(99);
+            int b = a + random.nextInt(100 - a);
+            int c = 1 + random.nextInt(99);
+            int d = c + random.nextInt(100 - c);
+            out.println(a + "-" + b + "," + c + "-" + d);
+        }
+    }
+
+    private static final int CRATE_STACKS = 9;
+
+    // n moves over 9 stacks; we track the stack heights so every move is legal
+    private void writeCrateMoves(PrintWriter out, Random random, int n) {
+        int height = Math.max(1, n / 100);
+        int[] sizes = new int[CRATE_STACKS];
+        Arrays.fill(sizes, height);
+        for (int y = 0; y < height; y++) {
+            StringBuilder layer = new StringBuilder();
+            for (int s = 0; s < CRATE_STACKS; s++) {
+                if (s > 0) {
+                    layer.append(' ');
+                }
+                layer.append('[').append((char) ('A' + random.nextInt(26))).append(']');
+            }
+            out.println(layer);
+        }
+        StringBuilder labels = new StringBuilder();
+        for (int s = 0; s < CRATE_STACKS; s++) {
+            labels.append(' ').append(s + 1).append(' ');
+            if (s < CRATE_STACKS - 1) {
+                labels.append(' ');
+            }
+        }
+        out.println(labels);
+        out.println();
+
+        for (int i = 0; i < n; i++) {
+            int from = random.nextInt(CRATE_STACKS);
+            while (sizes[from] == 0) {
+                from = random.nextInt(CRATE_STACKS);
+            }
+            int to = random.nextInt(CRATE_STACKS - 1);
+            if (to >= from) {
+                to++;
+            }
+            int num = 1 + random.nextInt(Math.min(sizes[from], 50));
+            sizes[from] -= num;
+            sizes[to] += num;
+            out.println("move " + num + " from " + (from + 1) + " to " + (to + 1));
+        }
+    }
+
+    // n characters from a small alphabet which can never hold a marker; then a 14 character marker right at the end
+    private void writeSignal(PrintWriter out, Random random, int n) {
+        StringBuilder signal = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            signal.append((char) ('a' + random.nextInt(8)));
+        }
+        signal.append("abcdefghijklmn");
+        out.println(signal);
+    }
+
+    // Roughly n lines of terminal output from a random walk around a directory tree
+    private void writeTerminalLog(PrintWriter out, Random random, int n) {
+        out.println("$ cd /");
+        int lines = 1;
+        int depth = 0;
+        int dirs = 0;
+        while (lines < n) {
+            out.println("$ ls");
+            lines++;
+            int files = 1 + random.nextInt(5);
+            for (int f = 0; f < files; f++) {
+                out.println((1 + random.nextInt(300000)) + " f" + f + ".txt");
+                lines++;
+            }
+            if (depth > 0 && (depth >= 30 || random.nextInt(3) == 0)) {
+                out.println("$ cd ..");
+                depth--;
+            } else {
+                String dir = "d" + dirs++;
+                out.println("dir " + dir);
+                out.println("$ cd " + dir);
+                lines++;
+                depth++;
+            }
+            lines++;
+        }
+    }
+
+    // A square forest of roughly n trees
+    private void writeForest(PrintWriter out, Random random, int n) {
+        int side = sideOf(n);
+        for (int y = 0; y < side; y++) {
+            StringBuilder row = new StringBuilder();
+            for (int x = 0; x < side; x++) {
+                row.append((char) ('0' + random.nextInt(10)));
+            }
+            out.println(row);
+        }
+    }
+
+    // n run length moves
+    private void writeRopeMoves(PrintWriter out, Random random, int n) {
+        String directions = "RLUD";
+        for (int i = 0; i < n; i++) {
+            out.println(directions.charAt(random.nextInt(4)) + " " + (1 + random.nextInt(20)));
+        }
+    }
+
+    // n instructions; always long enough for the 220 cycles the puzzle reads
+    private void writeProgram(PrintWriter out, Random random, int n) {
+        for (int i = 0; i < Math.max(n, 220); i++) {
+            if (random.nextInt(3) == 0) {
+                out.println("noop");
+            } else {
+                out.println("addx " + (random.nextInt(21) - 10));
+            }
+        }
+    }
+
+    // A heightmap of roughly n cells climbing from S in the top left to E in the bottom right
+    private void writeHeightmap(PrintWriter out, Random random, int n) {
+        int side = sideOf(n);
+        for (int y = 0; y < side; y++) {
+            StringBuilder row = new StringBuilder();
+            for (int x = 0; x < side; x++) {
+                if (x == 0 && y == 0) {
+                    row.append('S');
+                } else if (x == side - 1 && y == side - 1) {
+                    row.append('E');
+                } else {
+                    int h = ((x + y) * 26) / (2 * side) + random.nextInt(3) - 1;
+                    row.append((char) ('a' + Math.max(0, Math.min(25, h))));
+                }
+            }
+            out.println(row);
+        }
+    }
+
+    // n pairs of packets
+    private void writePacketPairs(PrintWriter out, Random random, int n) {
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                out.println();
+            }
+            out.println(randomPacket(random, 0));
+            out.println(randomPacket(random, 0));
+        }
+    }
+
+    private String randomPacket(Random random, int depth) {
+        StringBuilder packet = new StringBuilder("[");
+        int items = random.nextInt(5);
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                packet.append(',');
+            }
+            if (depth < 4 && random.nextInt(3) == 0) {
+                packet.append(randomPacket(random, depth + 1));
+            } else {
+                packet.append(random.nextInt(11));
+            }
+        }
+        return packet.append(']').toString();
+    }
+
+    // Short horizontal and vertical rock traces totalling roughly n points in a cave under the sand source
+    private void writeRockTraces(PrintWriter out, Random random, int n) {
+        int side = sideOf(n);
+        int points = 0;
+        while (points < n) {
+            int x = 500 - side + random.nextInt(2 * side);
+            int y = 1 + random.nextInt(side);
+            int length = 1 + random.nextInt(10);
+            if (random.nextBoolean()) {
+                out.println(x + "," + y + " -> " + (x + length) + "," + y);
+            } else {
+                out.println(x + "," + y + " -> " + x + "," + (y + length));
+            }
+            points += length + 1;
+        }
+    }
+
+    private static final long SENSOR_ROW = 2000000L;
+
+    // n sensors scattered along the row we sweep
+    private void writeSensors(PrintWriter out, Random random, int n) {
+        for (int i = 0; i < n; i++) {
+            long x = random.nextInt(n * 10);
+            long y = SENSOR_ROW - 500 + random.nextInt(1000);
+            long bx = x + random.nextInt(1000) - 500;
+            long by = y + random.nextInt(1000) - 500;
+            out.println("Sensor at x=" + x + ", y=" + y + ": closest beacon is at x=" + bx + ", y=" + by);
+        }
+    }
+
+    // n valves in a ring with a few random shortcuts; only a handful have a flow rate worth opening
+    private void writeValves(PrintWriter out, Random random, int n) {
+        int valves = Math.max(n, 10);
+        List<Set<Integer>> tunnels = new ArrayList<>();
+        for (int i = 0; i < valves; i++) {
+            tunnels.add(new TreeSet<>());
+        }
+        for (int i = 0; i < valves; i++) {
+            int next = (i + 1) % valves;
+            tunnels.get(i).add(next);
+            tunnels.get(next).add(i);
+            if (random.nextInt(10) == 0) {
+                int shortcut = random.nextInt(valves);
+                if (shortcut != i) {
+                    tunnels.get(i).add(shortcut);
+                    tunnels.get(shortcut).add(i);
+                }
+            }
+        }
+        for (int i = 0; i < valves; i++) {
+            int flowRate = (i > 0 && random.nextInt(valves) < 8) ? 1 + random.nextInt(25) : 0;
+            StringJoiner leadsTo = new StringJoiner(", ");
+            for (int t : tunnels.get(i)) {
+                leadsTo.add(valveName(t));
+            }
+            boolean plural = tunnels.get(i).size() > 1;
+            out.println("Valve " + valveName(i) + " has flow rate=" + flowRate + "; tunnel" + (plural ? "s lead" : " leads") +
+                    " to valve" + (plural ? "s " : " ") + leadsTo);
+        }
+    }
+
+    // Valve 0 is always AA as that is where we start
+    private String valveName(int i) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.insert(0, (char) ('A' + (i % 26)));
+            i = i / 26;
+        } while (i > 0);
+        while (name.length() < 2) {
+            name.insert(0, 'A');
+        }
+        return name.toString();
+    }
+
+    // n droplets in a box sized so that roughly half the cells are lava
+    private void writeCubes(PrintWriter out, Random random, int n) {
+        int side = Math.max(2, (int) Math.cbrt(n * 2.0));
+        for (int i = 0; i < n; i++) {
+            out.println(random.nextInt(side) + "," + random.nextInt(side) + "," + random.nextInt(side));
+        }
+    }
+
+    // n numbers with a single zero
+    private void writeEncryptedFile(PrintWriter out, Random random, int n) {
+        int zero = random.nextInt(n);
+        for (int i = 0; i < n; i++) {
+            if (i == zero) {
+                out.println(0);
+            } else {
+                int v = random.nextInt(20000) - 10000;
+                out.println(v == 0 ? 1 : v);
+            }
+        }
+    }
+
+    // A random expression tree with n number shouting monkeys; + and - only so the values stay readable
+    private void writeMonkeyTree(PrintWriter out, Random random, int n) {
+        List<String> pool = new ArrayList<>();
+        int names = 0;
+        for (int i = 0; i < Math.max(n, 2); i++) {
+            String name = monkeyName(names++);
+            out.println(name + ": " + (1 + random.nextInt(10)));
+            pool.add(name);
+        }
+        while (pool.size() > 1) {
+            String left = takeAny(pool, random);
+            String right = takeAny(pool, random);
+            String name = pool.isEmpty() ? "root" : monkeyName(names++);
+            out.println(name + ": " + left + (random.nextBoolean() ? " + " : " - ") + right);
+            pool.add(name);
+        }
+    }
+
+    private String takeAny(List<String> pool, Random random) {
+        int i = random.nextInt(pool.size());
+        String taken = pool.get(i);
+        pool.set(i, pool.get(pool.size() - 1));
+        pool.remove(pool.size() - 1);
+        return taken;
+    }
+
+    // Prefixed so we never collide with root or humn
+    private String monkeyName(int i) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.insert(0, (char) ('a' + (i % 26)));
+            i = i / 26;
+        } while (i > 0);
+        return "m" + name;
+    }
+
+}
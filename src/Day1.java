@@ -1,21 +1,21 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.PriorityQueue;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class Day1 {
 
     @Test
     public void day1() throws IOException {
-        BufferedReader input = new BufferedReader(new FileReader("day1.txt"));
-
-        Counter counter = new Counter(input);
+        Counter counter = new Counter(MappedInput.open("day1.txt"), 3, true);
 
         int best = counter.getBest();
         assertEquals(4, best + 1);
@@ -25,81 +25,307 @@ public class Day1 {
 
     @Test
     public void day1Actual() throws IOException {
-        BufferedReader input = new BufferedReader(new FileReader("day1-actual.txt"));
-
-        Counter counter = new Counter(input);
+        Counter counter = new Counter(MappedInput.open("day1-actual.txt"), 3, true);
 
         int best = counter.getBest();
         assertEquals(66186, counter.get(best));
         assertEquals(196804, counter.getBestThree());
     }
 
+    @Test
+    public void streamingTopK() throws IOException {
+        // Without the retained counts we only ever hold k totals
+        Counter counter = new Counter(MappedInput.open("day1.txt"));
+        assertEquals(3, counter.getBest());
+        assertEquals(45000, counter.getBestThree());
+
+        counter = new Counter(MappedInput.open("day1.txt"), 5, false);
+        assertArrayEquals(new long[]{24000, 11000, 10000, 6000, 4000}, counter.getTop());
+        assertEquals(45000, counter.getBestThree());
+    }
+
+    @Test
+    public void parallelMatchesSequential() throws IOException {
+        for (String filename : new String[]{"day1.txt", "day1-actual.txt"}) {
+            Counter sequential = new Counter(MappedInput.open(filename), 3, false);
+            // Tiny chunks so even the example is split many times
+            for (int chunkBytes : new int[]{1, 16, 1000, Integer.MAX_VALUE}) {
+                Counter parallel = countInParallel(MappedInput.open(filename), 3, chunkBytes);
+                assertEquals(sequential.getBest(), parallel.getBest());
+                assertEquals(sequential.getBestThree(), parallel.getBestThree());
+                assertEquals(sequential.size(), parallel.size());
+            }
+        }
+    }
+
+    @Test
+    public void parallelSplitsCrlfInput() throws IOException {
+        for (String filename : new String[]{"day1.txt", "day1-actual.txt"}) {
+            Counter sequential = new Counter(MappedInput.open(filename), 3, false);
+            String text = new String(Files.readAllBytes(Path.of(filename)), StandardCharsets.US_ASCII);
+            byte[] crlf = text.replace("\r\n", "\n").replace("\n", "\r\n").getBytes(StandardCharsets.US_ASCII);
+            for (int chunkBytes : new int[]{1, 16, 1000, Integer.MAX_VALUE}) {
+                Counter parallel = countInParallel(MappedInput.wrap(crlf), 3, chunkBytes);
+                assertEquals(sequential.getBest(), parallel.getBest());
+                assertEquals(sequential.getBestThree(), parallel.getBestThree());
+                assertEquals(sequential.size(), parallel.size());
+            }
+        }
+
+        // The split has to find the \r\n blank line rather than falling back to one sequential count
+        MappedInput input = MappedInput.wrap("1\r\n\r\n2\r\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(3, new CountTask(input, 0, input.size(), 3, 1).findBlankLine(0));
+        input = MappedInput.wrap("1\n\n2\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(2, new CountTask(input, 0, input.size(), 3, 1).findBlankLine(0));
+    }
+
+    private static final int PARALLEL_CHUNK_BYTES = 1 << 20;
+
+    Counter countInParallel(MappedInput input) {
+        return countInParallel(input, 3, PARALLEL_CHUNK_BYTES);
+    }
+
+    // Splits the input into byte ranges which start and end on group boundaries and counts each on its own fork join task.
+    // Retaining every count isn't supported in this mode; get(i) will throw.
+    Counter countInParallel(MappedInput input, int k, int chunkBytes) {
+        return ForkJoinPool.commonPool().invoke(new CountTask(input, input.position(), input.limit(), k, chunkBytes));
+    }
+
+    class CountTask extends RecursiveTask<Counter> {
+        private static final long serialVersionUID = 1L;
+
+        private final MappedInput input;
+        private final long from, to;
+        private final int k;
+        private final int chunkBytes;
+
+        CountTask(MappedInput input, long from, long to, int k, int chunkBytes) {
+            this.input = input;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.chunkBytes = chunkBytes;
+        }
+
+        @Override
+        protected Counter compute() {
+            if (to - from > chunkBytes) {
+                // Snap the midpoint forward to the next blank line; the blank line itself belongs to neither half
+                long blank = findBlankLine(from + ((to - from) / 2));
+                if (blank >= 0) {
+                    long after = blank + (input.byteAt(blank) == '\r' ? 2 : 1);
+                    CountTask left = new CountTask(input, from, blank, k, chunkBytes);
+                    CountTask right = new CountTask(input, after, to, k, chunkBytes);
+                    left.fork();
+                    Counter rightCount = right.compute();
+                    return merge(left.join(), rightCount);
+                }
+            }
+            return new Counter(input.slice(from, to), k, false);
+        }
+
+        // Position of a blank line at or after start, either a bare newline or a \r\n; both sides must keep at least one group
+        private long findBlankLine(long start) {
+            for (long p = Math.max(start, from + 1); p + 1 < to; p++) {
+                if (input.byteAt(p - 1) != '\n') {
+                    continue;
+                }
+                int c = input.byteAt(p);
+                if (c == '\n' || (c == '\r' && p + 2 < to && input.byteAt(p + 1) == '\n')) {
+                    return p;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // The right hand counter's groups all come after the left's so its best index is offset by the left's group count.
+    // Ties go to the left, as they do when counting sequentially.
+    private Counter merge(Counter left, Counter right) {
+        TopK top = new TopK(left.top.heap.length);
+        for (long v : left.getTop()) {
+            top.offer(v);
+        }
+        for (long v : right.getTop()) {
+            top.offer(v);
+        }
+        if (right.bestValue > left.bestValue) {
+            return new Counter(top, left.size + right.best, right.bestValue, left.size + right.size);
+        }
+        return new Counter(top, left.best, left.bestValue, left.size + right.size);
+    }
+
     class Counter {
-        private final ArrayList<Integer> counts;
-        private final PriorityQueue<Integer> bests;
-        private final int best;
-        private final int bestThree;
-
-        // Takes an input stream as the constructor input.
-        // Parses during construction; build an array of elf contents.
-        // Tracks the best elf
-        public Counter(BufferedReader input) throws IOException {
-            ArrayList<Integer> counts = new ArrayList<>();
-            PriorityQueue<Integer> bests = new PriorityQueue<>(Collections.reverseOrder());
+        private final TopK top;
+        private final boolean retainCounts;
+        private long[] counts = new long[0];
+        private int size = 0;
+        private int best = 0;
+        private long bestValue = 0;
 
-            // As we parse the file, we need to track the current best
-            int bestIndex = 0;
-            int bestValue = 0;
+        public Counter(MappedInput input) {
+            this(input, 3, false);
+        }
+
+        private Counter(TopK top, int best, long bestValue, int size) {
+            this.top = top;
+            this.retainCounts = false;
+            this.best = best;
+            this.bestValue = bestValue;
+            this.size = size;
+        }
 
-            int sum = 0;
-            int i = 0;
+        // Takes a mapped input as the constructor input.
+        // Parses during construction; streams each elf's total through a top k heap so memory stays constant.
+        // Tracks the best elf.
+        // Every total is only kept (so that get(i) works) if retainCounts is asked for.
+        public Counter(MappedInput input, int k, boolean retainCounts) {
+            this.top = new TopK(k);
+            this.retainCounts = retainCounts;
+
+            long sum = 0;
             // Parse the file line by line; accumulate a total and spill which we reach a blank line.
-            while (input.ready()) {
-                String line = input.readLine();
-                if (line.length() > 0) {
-                    sum = sum + Integer.parseInt(line);
+            while (input.hasRemaining()) {
+                if (!input.atEndOfLine()) {
+                    sum = sum + input.nextLong();
                 } else {
-                    counts.add(sum);
-                    bests.add(sum);
-                    if (sum > bestValue) {
-                        bestIndex = i;
-                        bestValue = sum;
-                    }
+                    spill(sum);
                     sum = 0;
-                    i++;
                 }
+                input.skipLine();
             }
+            spill(sum);
+        }
 
-            // TODO don't like having this tail duplication
-            counts.add(sum);
-            bests.add(sum);
+        private void spill(long sum) {
+            // As we parse the file, we need to track the current best
             if (sum > bestValue) {
-                bestIndex = i;
+                best = size;
+                bestValue = sum;
             }
-
-            this.counts = counts;
-            this.best = bestIndex;
-            this.bests = bests;
-
-            sum = 0;
-            i = 0;
-            while (i < 3 && bests.size() > 0) {
-                sum += bests.remove();
-                i++;
+            top.offer(sum);
+            if (retainCounts) {
+                if (size == counts.length) {
+                    counts = Arrays.copyOf(counts, Math.max(16, counts.length * 2));
+                }
+                counts[size] = sum;
             }
-            this.bestThree = sum;
+            size++;
         }
 
         public int getBest() {
             return best;
         }
 
-        public int getBestThree() {
-            return bestThree;
+        public long getBestThree() {
+            return top.sumOfBest(3);
+        }
+
+        public long[] getTop() {
+            return top.toSortedArray();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long get(int i) {
+            if (!retainCounts) {
+                throw new UnsupportedOperationException("Counts were not retained");
+            }
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException(i);
+            }
+            return counts[i];
+        }
+    }
+
+    // Keeps the k largest values seen in a fixed size primitive min heap; the smallest of the best is always at the root
+    // so a new value only has to beat that to get in.
+    class TopK {
+        private final long[] heap;
+        private int size = 0;
+
+        public TopK(int k) {
+            if (k < 1) {
+                throw new IllegalArgumentException("k must be at least 1");
+            }
+            this.heap = new long[k];
+        }
+
+        public void offer(long value) {
+            if (size < heap.length) {
+                heap[size] = value;
+                siftUp(size);
+                size++;
+            } else if (value > heap[0]) {
+                heap[0] = value;
+                siftDown(0);
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // Largest first
+        public long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted);
+            for (int i = 0; i < sorted.length / 2; i++) {
+                long t = sorted[i];
+                sorted[i] = sorted[sorted.length - 1 - i];
+                sorted[sorted.length - 1 - i] = t;
+            }
+            return sorted;
+        }
+
+        public long sumOfBest(int n) {
+            if (n > heap.length) {
+                throw new IllegalStateException("Only tracking the best " + heap.length);
+            }
+            long[] sorted = toSortedArray();
+            long sum = 0;
+            for (int i = 0; i < n && i < sorted.length; i++) {
+                sum += sorted[i];
+            }
+            return sum;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent] <= heap[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = (2 * i) + 1;
+                int right = left + 1;
+                int smallest = i;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
         }
 
-        public int get(int i) {
-            return counts.get(i);
+        private void swap(int a, int b) {
+            long t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
         }
     }
 
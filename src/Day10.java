@@ -1,10 +1,14 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -19,62 +23,286 @@ public class Day10 {
         assertEquals(14360, evaluateX("day10-actual.txt"));
     }
 
-    private int evaluateX(String filename) throws IOException {
-        List<Integer> states = getStates(filename);
-        int sum  = 0;
-        for (int i = 0; i <= 220; i++) {
-            int cycle = i + 1;
-            if (((cycle + 20) % 40) == 0) {
-                int score = states.get(i) * cycle;
-                sum += score;
-            }
+    private long evaluateX(String filename) throws IOException {
+        // Cycle 20 and every 40 after that, as far as 220
+        return trace(filename).signalStrengthEvery(20, 40, 220);
+    }
+
+    @Test
+    public void answersQueriesFromChangePoints() throws Exception {
+        Path program = Files.createTempFile("day10", ".txt");
+        Files.writeString(program, "noop\naddx 3\naddx -5\n");
+        RegisterTrace trace = trace(program.toString());
+        assertEquals(5, trace.cycles());
+        assertEquals(3, trace.changes());
+        long[] expected = {1, 1, 1, 4, 4, -1, -1};
+        for (int cycle = 1; cycle <= 7; cycle++) {
+            assertEquals(expected[cycle - 1], trace.xDuring(cycle));
         }
-        return sum;
+        assertEquals(4 * 4 + 5 * 4, trace.signalStrength(4, 5));
+        assertEquals(1 + 3 + 5 * 4 + 7 * -1, trace.signalStrengthEvery(1, 2, 7));
+        assertEquals(0, trace.signalStrengthEvery(3, 2, 1));
+        // Three cycles, not a run of them
+        assertEquals(1 + 4 * 4 + 5 * 4, trace.signalStrength(1, 4, 5));
+
+        RegisterTrace actual = trace("day10-actual.txt");
+        long sum = 0;
+        long[] cycles = new long[50];
+        for (int i = 0; i < cycles.length; i++) {
+            // Out of order and with repeats
+            cycles[i] = ((i * 37L) % 230) + 1;
+            sum += cycles[i] * actual.xDuring(cycles[i]);
+        }
+        assertEquals(sum, actual.signalStrength(cycles));
+        assertEquals(14360, actual.signalStrength(20, 60, 100, 140, 180, 220));
+        assertEquals(20 * actual.xDuring(20) + 60 * actual.xDuring(60) + 100 * actual.xDuring(100),
+                actual.signalStrength(20, 60, 100));
     }
 
     @Test
     public void day10part2() throws Exception {
-        int screenWidth = 40;
-        int screenHeight = 6;
-        int numPixels = screenHeight * screenWidth;
-        char[][] screen = new char[screenHeight][screenWidth];
-        List<Integer> states = getStates("day10-actual.txt");
-        for (int i = 0; i < numPixels; i++) {
-            Integer state = states.get(i);
-            int y = i / screenWidth;
-            int x = i % screenWidth;
-            boolean isPixelLite = (state >= x -1 && state <= x + 1);
-            screen[y][x] = isPixelLite ? '*' : ' ';
-        }
-        renderScreen(screen);
+        RegisterTrace trace = trace("day10-actual.txt");
+        Crt crt = new Crt(40, 6, Crt.Format.PACKED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, crt.render(trace, Channels.newChannel(out)));
+        byte[] frame = out.toByteArray();
+        assertEquals(6 * 5, frame.length);
+        renderScreen(frame, 40, 6);
+    }
+
+    @Test
+    public void rendersAnyGeometryOverManyFrames() throws Exception {
+        RegisterTrace trace = trace("day10-actual.txt");
+        int[][] geometries = {{40, 6}, {7, 3}, {1, 1}, {13, 5}, {64, 2}};
+        for (int[] geometry : geometries) {
+            int width = geometry[0];
+            int height = geometry[1];
+            int rowBytes = (width + 7) / 8;
+            Crt crt = new Crt(width, height, Crt.Format.PACKED);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int frames = crt.render(trace, Channels.newChannel(out));
+            byte[] rendered = out.toByteArray();
+            assertEquals((trace.cycles() + (width * height) - 1) / (width * height), frames);
+            assertEquals(frames * height * rowBytes, rendered.length);
+
+            // Every pixel against X for its cycle
+            for (int f = 0; f < frames; f++) {
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        long cycle = ((long) f * width * height) + ((long) y * width) + x + 1;
+                        long sprite = trace.xDuring(cycle);
+                        boolean lit = cycle <= trace.cycles() && sprite >= x - 1 && sprite <= x + 1;
+                        int b = rendered[(((f * height) + y) * rowBytes) + (x / 8)] & (0x80 >>> (x & 7));
+                        assertEquals(lit, b != 0);
+                    }
+                }
+            }
+        }
+
+        // PBM adds a header to each frame
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Crt(40, 6, Crt.Format.PBM).render(trace, Channels.newChannel(out));
+        byte[] pbm = out.toByteArray();
+        String header = "P4\n40 6\n";
+        assertEquals(header, new String(pbm, 0, header.length(), StandardCharsets.US_ASCII));
+        assertEquals(header.length() + (6 * 5), pbm.length);
     }
 
-    private void renderScreen(char[][] screen) {
-        for (char[] row : screen) {
-            StringBuilder line = new StringBuilder();
-            for (char c: row) {
-                line.append(c);
+    private void renderScreen(byte[] frame, int width, int height) {
+        int rowBytes = (width + 7) / 8;
+        char[] line = new char[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean isPixelLite = (frame[(y * rowBytes) + (x / 8)] & (0x80 >>> (x & 7))) != 0;
+                line[x] = isPixelLite ? '*' : ' ';
             }
             System.out.println(line);
         }
     }
 
-    private List<Integer> getStates(String filename) throws IOException {
-        BufferedReader input = new BufferedReader(new FileReader(filename));
-        List<Integer> states = new ArrayList<>();
-        int x = 1;
-        while(input.ready()) {
-            String line = input.readLine();
-            if (line.equals("noop")) {
-                states.add(x);
-            } else if (line.startsWith("addx ")) {
-                int add = Integer.parseInt(line.split(" ")[1]);
-                states.add(x);
-                states.add(x);
-                x = x + add;
+    // Runs the program, keeping only the cycles where X changes rather than X for every cycle
+    RegisterTrace trace(String filename) throws IOException {
+        MappedInput input = MappedInput.open(filename);
+        RegisterTrace trace = new RegisterTrace();
+        long x = 1;
+        long cycle = 1;
+        while (input.skipWhitespace()) {
+            MappedInput.Token instruction = input.nextToken();
+            if (instruction.contentEquals("noop")) {
+                cycle++;
+            } else if (instruction.contentEquals("addx")) {
+                int add = input.nextInt();
+                // X only takes the new value once both cycles of the add are done
+                cycle += 2;
+                if (add != 0) {
+                    x = x + add;
+                    trace.changeAt(cycle, x);
+                }
+            }
+        }
+        trace.cycles = cycle - 1;
+        return trace;
+    }
+
+    // The value of X over a run of the program as the cycles at which it changes; X holds values[i] from cycle
+    // starts[i] until the next change. Queries binary search the change points so cost nothing per cycle.
+    class RegisterTrace {
+        private long[] starts = new long[16];
+        private long[] values = new long[16];
+        private int size = 0;
+        private long cycles;
+
+        RegisterTrace() {
+            changeAt(1, 1);
+        }
+
+        void changeAt(long cycle, long x) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            starts[size] = cycle;
+            values[size] = x;
+            size++;
+        }
+
+        // How many cycles the program took to run
+        long cycles() {
+            return cycles;
+        }
+
+        int changes() {
+            return size;
+        }
+
+        // X during a cycle, counting from 1; after the program ends X stays at its last value
+        long xDuring(long cycle) {
+            return values[segmentOf(cycle, 0)];
+        }
+
+        // Sum of cycle * X over the given cycles, in any order
+        long signalStrength(long... cycles) {
+            long[] sorted = cycles.clone();
+            Arrays.sort(sorted);
+            long sum = 0;
+            int segment = 0;
+            for (long cycle : sorted) {
+                // Sorted so the segment only ever moves forwards
+                segment = segmentOf(cycle, segment);
+                sum += cycle * values[segment];
+            }
+            return sum;
+        }
+
+        // Sum of cycle * X over first, first + step, ... up to last; each run of the same X adds the arithmetic
+        // series of the sampled cycles falling within it, so this is O(changes) however many cycles are sampled.
+        long signalStrengthEvery(long first, long step, long last) {
+            long sum = 0;
+            long next = first;
+            for (int segment = segmentOf(first, 0); segment < size && next <= last; segment++) {
+                long end = segment + 1 < size ? Math.min(last, starts[segment + 1] - 1) : last;
+                if (next > end) {
+                    continue;
+                }
+                long count = ((end - next) / step) + 1;
+                long lastSampled = next + ((count - 1) * step);
+                sum += values[segment] * (((next + lastSampled) * count) / 2);
+                next = lastSampled + step;
+            }
+            return sum;
+        }
+
+        long startOf(int change) {
+            return starts[change];
+        }
+
+        long valueOf(int change) {
+            return values[change];
+        }
+
+        // Index of the change in effect during the cycle, searching from the given index onwards
+        int segmentOf(long cycle, int from) {
+            int lo = from;
+            int hi = size - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (starts[mid] <= cycle) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+    }
+
+    // Draws the sprite a frame at a time into a reused buffer of packed bits, one row per whole number of bytes with
+    // the leftmost pixel in the top bit. A run of cycles with the same X can only light the three columns under the
+    // sprite in each row it crosses, so frames are drawn a row per run rather than a pixel per cycle.
+    class Crt {
+        enum Format {
+            // Each frame's bits back to back
+            PACKED,
+            // Each frame as a binary portable bitmap (P4), which can be concatenated
+            PBM
+        }
+
+        private final int width;
+        private final int height;
+        private final int rowBytes;
+        private final ByteBuffer header;
+        private final ByteBuffer frame;
+
+        Crt(int width, int height, Format format) {
+            if (width < 1 || height < 1) {
+                throw new IllegalArgumentException("Screen must be at least 1x1");
+            }
+            this.width = width;
+            this.height = height;
+            this.rowBytes = (width + 7) / 8;
+            this.frame = ByteBuffer.allocate(rowBytes * height);
+            this.header = format == Format.PBM
+                    ? ByteBuffer.wrap(("P4\n" + width + " " + height + "\n").getBytes(StandardCharsets.US_ASCII))
+                    : ByteBuffer.allocate(0);
+        }
+
+        // Writes as many frames as it takes to show every cycle of the program; returns how many that was
+        int render(RegisterTrace trace, WritableByteChannel out) throws IOException {
+            long pixels = (long) width * height;
+            long frames = (trace.cycles() + pixels - 1) / pixels;
+            for (long f = 0; f < frames; f++) {
+                draw(trace, (f * pixels) + 1, Math.min(trace.cycles(), (f + 1) * pixels));
+                header.rewind();
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                frame.rewind();
+                while (frame.hasRemaining()) {
+                    out.write(frame);
+                }
+            }
+            return (int) frames;
+        }
+
+        // Draws cycles first to last into the frame which starts with cycle first
+        private void draw(RegisterTrace trace, long first, long last) {
+            byte[] bits = frame.array();
+            Arrays.fill(bits, (byte) 0);
+            for (int run = trace.segmentOf(first, 0); run < trace.changes() && trace.startOf(run) <= last; run++) {
+                long x = trace.valueOf(run);
+                long from = Math.max(first, trace.startOf(run)) - first;
+                long to = (run + 1 < trace.changes() ? Math.min(last, trace.startOf(run + 1) - 1) : last) - first;
+                for (long row = from / width; row <= to / width; row++) {
+                    long rowStart = row * width;
+                    // The columns of this row within the run, narrowed to those under the sprite
+                    long lo = Math.max(Math.max(from, rowStart) - rowStart, x - 1);
+                    long hi = Math.min(Math.min(to, rowStart + width - 1) - rowStart, x + 1);
+                    for (long column = lo; column <= hi; column++) {
+                        bits[(int) ((row * rowBytes) + (column >>> 3))] |= (byte) (0x80 >>> (column & 7));
+                    }
+                }
             }
         }
-        return states;
     }
 
 }
@@ -3,15 +3,19 @@ import org.junit.jupiter.api.Test;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Day11 {
 
-    private final Function<Long, Long> divideByThree = i -> i / 3;
+    private final LongUnaryOperator divideByThree = i -> i / 3;
 
     @Test
     public void day11() throws Exception {
@@ -24,24 +28,68 @@ public class Day11 {
         assertEquals(21553910156L, getMoneyBusiness(monkeys, 10000, makeReduceByMultipleOfTestsFor(monkeys)));
     }
 
-    private long getMoneyBusiness(List<Monkey> monkeys, int n, Function<Long, Long> worryReducer) {
+    @Test
+    public void itemCyclesExtrapolateRounds() throws Exception {
+        for (String filename : new String[]{"day11.txt", "day11-actual.txt"}) {
+            for (int rounds : new int[]{0, 1, 20, 1000, 10000}) {
+                List<Monkey> monkeys = parseInput(filename);
+                long[] byItem = countInspectionsByItem(monkeys, rounds);
+                assertArrayEquals(countInspections(monkeys, rounds, makeReduceByMultipleOfTestsFor(monkeys)), byItem);
+            }
+        }
+        assertEquals(BigInteger.valueOf(21553910156L), getMoneyBusinessByItem(parseInput("day11-actual.txt"), 10000));
+
+        // Far more rounds than could be simulated; every item settles into a cycle long before
+        List<Monkey> monkeys = parseInput("day11-actual.txt");
+        long[] inspections = countInspectionsByItem(monkeys, 1_000_000_000_000L);
+        long total = 0;
+        for (long count : inspections) {
+            total += count;
+        }
+        int items = 0;
+        for (Monkey monkey : monkeys) {
+            items += monkey.size;
+        }
+        // Each item is inspected at least once a round
+        assertTrue(total >= items * 1_000_000_000_000L);
+    }
+
+    long getMoneyBusiness(List<Monkey> monkeys, int n, LongUnaryOperator worryReducer) {
+        long[] inspections = countInspections(monkeys, n, worryReducer);
+
+        // Filter for 2 most active
+        long first = 0;
+        long second = 0;
+        for (long count : inspections) {
+            if (count > first) {
+                second = first;
+                first = count;
+            } else if (count > second) {
+                second = count;
+            }
+        }
+        return first * second;
+    }
+
+    long[] countInspections(List<Monkey> monkeys, int n, LongUnaryOperator worryReducer) {
         // For n rounds each monkey looks at it's items in turn redistributing them to other monkeys;
         // We want to count how many inspections each monkey does;
-        Map<Integer, Long> inspections = new HashMap<>();
+        long[] inspections = new long[monkeys.size()];
         for (int i = 0; i < n; i++) {
             int m = 0;
             for (Monkey monkey : monkeys) {
                 // Foreach item this monkey has, inspect it
-                while (!monkey.items.isEmpty()) {
-                    long item = monkey.items.pollFirst();
-                    long operatedOn = applyOperation(item, monkey.operation);
+                inspections[m] += monkey.size;
+                while (monkey.size > 0) {
+                    long item = monkey.poll();
+                    long operatedOn = monkey.operate(item);
                     if (operatedOn < 0) {
                         // Guard rail for long wrap arounds
                         throw new RuntimeException();
                     }
 
                     // Reduce worry to manageable levels using the supplied strategy
-                    long worry = worryReducer.apply(operatedOn);
+                    long worry = worryReducer.applyAsLong(operatedOn);
 
                     boolean outcome = worry % monkey.test == 0;
 
@@ -49,33 +97,99 @@ public class Day11 {
                     int nextMonkey = outcome ? monkey.ifTrue : monkey.ifFalse;
 
                     monkeys.get(nextMonkey).offer(worry);
-
-                    inspections.put(m, inspections.getOrDefault(m, 0L) + 1);
                 }
                 m++;
             }
         }
+        return inspections;
+    }
 
-        // Filter for 2 most active
-        List<Long> values = new ArrayList<>(inspections.values());
-        Collections.sort(values, Collections.reverseOrder());
-        return values.get(0) * values.get(1);
+    // Same as part 2 but the counts for a very large number of rounds can be more than a long can multiply
+    BigInteger getMoneyBusinessByItem(List<Monkey> monkeys, long rounds) {
+        long[] inspections = countInspectionsByItem(monkeys, rounds);
+        Arrays.sort(inspections);
+        int last = inspections.length - 1;
+        return BigInteger.valueOf(inspections[last]).multiply(BigInteger.valueOf(inspections[last - 1]));
     }
 
-    private long applyOperation(long item, String operation) {
-        String[] components = operation.split(" ");
-        String op = components[3];
-        long right = components[4].equals("old") ? item : Integer.parseInt(components[4]);
+    // Under the reduce by multiple of tests strategy an item's path doesn't depend on any other item, so each item can be
+    // followed on its own. Its state at the start of a round is just which monkey holds it and its worry, and there are
+    // only so many of those, so sooner or later a state repeats and from then on the rounds in between repeat forever.
+    // Items are followed in parallel; none of the monkeys' items are taken.
+    long[] countInspectionsByItem(List<Monkey> monkeys, long rounds) {
+        long modulus = monkeys.stream().mapToLong(m -> m.test).reduce(1L, (a, b) -> a * b);
+        Monkey[] byIndex = monkeys.toArray(new Monkey[0]);
+        List<long[]> items = new ArrayList<>();
+        for (int m = 0; m < byIndex.length; m++) {
+            Monkey monkey = byIndex[m];
+            for (int k = 0; k < monkey.size; k++) {
+                items.add(new long[]{m, monkey.items[(monkey.head + k) & (monkey.items.length - 1)] % modulus});
+            }
+        }
 
-        if (op.equals("+")) {
-            return item + right;
-        } else if (op.equals("*")) {
-            return item * right;
+        return items.parallelStream()
+                .map(item -> followItem(byIndex, (item[0] * modulus) + item[1], modulus, rounds))
+                .reduce((a, b) -> {
+                    long[] sum = new long[a.length];
+                    for (int m = 0; m < a.length; m++) {
+                        sum[m] = a[m] + b[m];
+                    }
+                    return sum;
+                })
+                .orElse(new long[byIndex.length]);
+    }
+
+    // Inspections of a single item by each monkey, with its state packed as monkey * modulus + worry
+    private long[] followItem(Monkey[] monkeys, long state, long modulus, long rounds) {
+        long start = state;
+        long[] counts = new long[monkeys.length];
+        StateTable seen = new StateTable();
+        long round = 0;
+        int firstSeen = -1;
+        while (round < rounds) {
+            firstSeen = seen.putIfAbsent(state, (int) round);
+            if (firstSeen >= 0) {
+                break;
+            }
+            state = playRound(monkeys, state, modulus, counts);
+            round++;
+        }
+        if (round == rounds) {
+            return counts;
+        }
+
+        // Rounds firstSeen up to round repeat; replay the lead in to them to find what one cycle adds
+        long[] leadIn = new long[monkeys.length];
+        for (int r = 0; r < firstSeen; r++) {
+            start = playRound(monkeys, start, modulus, leadIn);
+        }
+        long cycle = round - firstSeen;
+        long cycles = (rounds - round) / cycle;
+        for (int m = 0; m < monkeys.length; m++) {
+            counts[m] += (counts[m] - leadIn[m]) * cycles;
+        }
+        for (long r = round + (cycles * cycle); r < rounds; r++) {
+            state = playRound(monkeys, state, modulus, counts);
         }
-        throw new UnsupportedOperationException(op);
+        return counts;
     }
 
-    private List<Monkey> parseInput(String filename) throws IOException {
+    // An item keeps being thrown on within a round for as long as it goes to a monkey which hasn't had its turn yet
+    private long playRound(Monkey[] monkeys, long state, long modulus, long[] counts) {
+        int m = (int) (state / modulus);
+        long worry = state % modulus;
+        int previous;
+        do {
+            Monkey monkey = monkeys[m];
+            counts[m]++;
+            worry = monkey.operate(worry) % modulus;
+            previous = m;
+            m = worry % monkey.test == 0 ? monkey.ifTrue : monkey.ifFalse;
+        } while (m > previous);
+        return (m * modulus) + worry;
+    }
+
+    List<Monkey> parseInput(String filename) throws IOException {
         List<Monkey> monkeys = new ArrayList<>();
         BufferedReader input = new BufferedReader(new FileReader(filename));
         while (input.ready()) {
@@ -83,22 +197,48 @@ public class Day11 {
             // Parse a single monkey
             if (line.startsWith("Monkey")) {
                 // Consume the 5 lines of monkey data
-                List<Long> startingItems = Arrays.stream(input.readLine().split("Starting items: ")[1].
-                        split(", ")).map(Long::parseLong).collect(Collectors.toList());
+                long[] startingItems = Arrays.stream(input.readLine().split("Starting items: ")[1].
+                        split(", ")).mapToLong(Long::parseLong).toArray();
                 String operation = input.readLine().split("Operation: ")[1];
                 long test = Long.parseLong(input.readLine().split(" ")[5]);
                 int ifTrue = Integer.parseInt(input.readLine().split(" ")[9]);
                 int ifFalse = Integer.parseInt(input.readLine().split(" ")[9]);
-                monkeys.add(new Monkey(startingItems, operation, test, ifTrue, ifFalse));
+                Monkey monkey = new Monkey(startingItems, test, ifTrue, ifFalse);
+                compile(monkey, operation);
+                monkeys.add(monkey);
             }
         }
         return monkeys;
     }
 
-    private Function<Long, Long> makeReduceByMultipleOfTestsFor(List<Monkey> monkeys) {
+    // Operations are always "new = old <op> <operand>"; decide once which of the three shapes this one is
+    // so inspecting an item is just a switch and one arithmetic op.
+    private void compile(Monkey monkey, String operation) {
+        String[] components = operation.split(" ");
+        String op = components[3];
+        boolean onOld = components[4].equals("old");
+
+        if (op.equals("*") && onOld) {
+            monkey.opcode = SQUARE;
+        } else if (op.equals("*")) {
+            monkey.opcode = MULTIPLY;
+            monkey.operand = Long.parseLong(components[4]);
+        } else if (op.equals("+") && onOld) {
+            // old + old
+            monkey.opcode = MULTIPLY;
+            monkey.operand = 2;
+        } else if (op.equals("+")) {
+            monkey.opcode = ADD;
+            monkey.operand = Long.parseLong(components[4]);
+        } else {
+            throw new UnsupportedOperationException(op);
+        }
+    }
+
+    LongUnaryOperator makeReduceByMultipleOfTestsFor(List<Monkey> monkeys) {
         // We are allowed to subtract any number of the multiple of the monkey tests
         // I had to look this strategy up on the reddit
-        final long testMultiplier = monkeys.stream().map( m -> m.test).reduce(1L, (a, b) -> a * b);
+        final long testMultiplier = monkeys.stream().mapToLong(m -> m.test).reduce(1L, (a, b) -> a * b);
         return (worry -> {
             long r = worry / testMultiplier;
             return worry - (r * testMultiplier);
@@ -106,23 +246,109 @@ public class Day11 {
         );
     }
 
+    // Open addressing map of item states to the round they were first seen, with linear probing.
+    // Keys are stored plus one so zero can mark an empty slot.
+    class StateTable {
+        private long[] keys = new long[1024];
+        private int[] rounds = new int[1024];
+        private int size = 0;
+
+        // The round the state was already seen in, or -1 after recording it against this round
+        int putIfAbsent(long state, int round) {
+            long key = state + 1;
+            int mask = keys.length - 1;
+            int slot = slotFor(key, mask);
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    return rounds[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            rounds[slot] = round;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return -1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldRounds = rounds;
+            keys = new long[oldKeys.length * 2];
+            rounds = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slotFor(oldKeys[i], mask);
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    rounds[slot] = oldRounds[i];
+                }
+            }
+        }
+
+        private int slotFor(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    static final int ADD = 0;
+    static final int MULTIPLY = 1;
+    static final int SQUARE = 2;
+
     class Monkey {
-        ArrayDeque<Long> items;
-        String operation;
+        // Items waiting to be inspected, as a ring buffer; head is the next one out
+        long[] items;
+        int head;
+        int size;
+        int opcode;
+        long operand;
         long test;
         int ifTrue;
         int ifFalse;
 
-        public Monkey(List<Long> startingItems, String operation, long test, int ifTrue, int ifFalse) {
-            this.items = new ArrayDeque<>(startingItems);
-            this.operation = operation;
+        public Monkey(long[] startingItems, long test, int ifTrue, int ifFalse) {
+            this.items = Arrays.copyOf(startingItems, Math.max(16, Integer.highestOneBit(startingItems.length) * 2));
+            this.size = startingItems.length;
             this.test = test;
             this.ifTrue = ifTrue;
             this.ifFalse = ifFalse;
         }
 
+        long operate(long old) {
+            switch (opcode) {
+                case ADD:
+                    return old + operand;
+                case MULTIPLY:
+                    return old * operand;
+                default:
+                    return old * old;
+            }
+        }
+
+        long poll() {
+            long item = items[head];
+            head = (head + 1) & (items.length - 1);
+            size--;
+            return item;
+        }
+
         public void offer(long item) {
-            items.offer(item);
+            if (size == items.length) {
+                // Unroll the ring into a buffer twice the size
+                long[] grown = new long[size * 2];
+                int toEnd = items.length - head;
+                System.arraycopy(items, head, grown, 0, toEnd);
+                System.arraycopy(items, 0, grown, toEnd, head);
+                items = grown;
+                head = 0;
+            }
+            items[(head + size) & (items.length - 1)] = item;
+            size++;
         }
     }
 }
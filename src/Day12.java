@@ -2,7 +2,10 @@ import org.junit.jupiter.api.Test;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -12,17 +15,16 @@ public class Day12 {
     @Test
     public void day12() throws Exception {
         // Parse the file into a grid
-        // then transform it into a graph of valid steps
+        // then search it stepping between neighbouring cells as we go
         // then so shortests paths
         char[][] day12Grid = loadGrid("day12.txt");
-        Map<Integer, List<Integer>> graph = makeGraphFrom(day12Grid);
-        assertTrue(isConnected(graph, getElement(day12Grid, 'E'), getElement(day12Grid, 'E')));
-        assertEquals(31, getShortestPathsFor(graph, getElement(day12Grid, 'E')).get(getElement(day12Grid, 'S')));
+        assertTrue(isConnected(day12Grid, getElement(day12Grid, 'E'), getElement(day12Grid, 'E')));
+        assertEquals(31, getShortestPathsFor(day12Grid, getElement(day12Grid, 'E'))[getElement(day12Grid, 'S')]);
 
         char[][] day12ActualGrid = loadGrid("day12-actual.txt");
-        assertTrue(isConnected(makeGraphFrom(day12ActualGrid), getElement(day12ActualGrid, 'S'), getElement(day12ActualGrid, 'E')));
-        Map<Integer, Integer> day12ActualDistances = getShortestPathsFor(makeGraphFrom(day12ActualGrid), getElement(day12ActualGrid, 'E'));
-        assertEquals(420, day12ActualDistances.get(getElement(day12ActualGrid, 'S')));
+        assertTrue(isConnected(day12ActualGrid, getElement(day12ActualGrid, 'S'), getElement(day12ActualGrid, 'E')));
+        int[] day12ActualDistances = getShortestPathsFor(day12ActualGrid, getElement(day12ActualGrid, 'E'));
+        assertEquals(420, day12ActualDistances[getElement(day12ActualGrid, 'S')]);
     }
 
     @Test
@@ -31,139 +33,587 @@ public class Day12 {
         assertEquals(414, getBestDownTo(loadGrid("day12-actual.txt")));
     }
 
-    private int getBestDownTo(char[][] grid) {
-        Map<Integer, Integer> distances = getShortestPathsFor(makeGraphFrom(grid), getElement(grid, 'E'));
+    @Test
+    public void searchesUnreachableCells() {
+        char[][] grid = {
+                "Sbcz".toCharArray(),
+                "zzzE".toCharArray(),
+        };
+        int[] distances = getShortestPathsFor(grid, getElement(grid, 'E'));
+        // The walk along the zs is fine but nothing can climb from c up to z
+        assertEquals(UNREACHABLE, distances[getElement(grid, 'S')]);
+        assertEquals(UNREACHABLE, distances[getIndexFor(0, 2, grid)]);
+        assertEquals(1, distances[getIndexFor(0, 3, grid)]);
+        assertEquals(3, distances[getIndexFor(1, 0, grid)]);
+        assertEquals(UNREACHABLE, getBestDownTo(grid));
+        assertTrue(!isConnected(grid, getElement(grid, 'E'), getElement(grid, 'S')));
+    }
 
-        int best = Integer.MAX_VALUE;
-        // Foreach elevation a in the grid look for a short path from the E
-        for (int y = 0; y < grid.length; y++) {
-            for (int x = 0; x < grid[0].length; x++) {
-                char c = grid[y][x];
-                if (c == 'a') {
-                    int i = getIndexFor(y, x, grid);
-                    if (distances.get(i) < best) {
-                        best = distances.get(i);
-                    }
+    @Test
+    public void reachabilityIndexMatchesSearch() throws Exception {
+        for (String filename : new String[]{"day12.txt", "day12-actual.txt"}) {
+            char[][] grid = loadGrid(filename);
+            int cells = grid.length * grid[0].length;
+            ReachabilityIndex index = new ReachabilityIndex(grid);
+            assertTrue(index.components() < cells);
+
+            int[] starts = new int[cells];
+            for (int i = 0; i < cells; i++) {
+                starts[i] = i;
+            }
+            for (int start = 0; start < cells; start += 97) {
+                int[] distances = getShortestPathsFor(grid, start);
+                for (int end = 0; end < cells; end++) {
+                    assertEquals(distances[end] != UNREACHABLE, index.canReach(start, end));
                 }
             }
+            int end = getElement(grid, 'E');
+            BitSet reaching = index.startsReaching(starts, end);
+            for (int start = 0; start < cells; start += 13) {
+                assertEquals(getShortestPathsFor(grid, start)[end] != UNREACHABLE, reaching.get(start));
+            }
         }
-        return best;
     }
 
-    private Map<Integer, Integer> getShortestPathsFor(Map<Integer, List<Integer>> graph, int start) {
-        // Do a shortest path run
-        // Prefill the distances maps
-        Map<Integer, Integer> distanceTo = new HashMap<>();
-        for (int i : graph.keySet()) {
-            distanceTo.put(i, Integer.MAX_VALUE);
+    @Test
+    public void singlePairSearchesAgree() throws Exception {
+        char[][] grid = loadGrid("day12-actual.txt");
+        int start = getElement(grid, 'S');
+        int end = getElement(grid, 'E');
+        PathFinder finder = new PathFinder(grid);
+        for (Mode mode : Mode.values()) {
+            PathResult result = finder.find(start, end, mode);
+            assertEquals(420, result.distance);
+            assertTrue(result.expanded > 0);
         }
-        distanceTo.put(start, 0);
+        char[][] example = loadGrid("day12.txt");
+        assertEquals(31, new PathFinder(example).find(getElement(example, 'S'), getElement(example, 'E'), Mode.A_STAR).distance);
 
-        // Priority queue of closes nodes
-        Comparator<Integer> byDist = new Comparator<Integer>() {
-            @Override
-            public int compare(Integer o1, Integer o2) {
-                return Integer.compare(distanceTo.get(o1), distanceTo.get(o2));
+        // Paths are walked forwards, so they are the searches back from each end read the other way round
+        int cells = grid.length * grid[0].length;
+        for (int to = 0; to < cells; to += 211) {
+            int[] distances = getShortestPathsFor(grid, to);
+            for (int from = 0; from < cells; from += 89) {
+                for (Mode mode : Mode.values()) {
+                    assertEquals(distances[from], finder.find(from, to, mode).distance);
+                }
             }
-        };
+        }
+    }
 
-        // Mark visited
-        Set<Integer> settled = new HashSet<>();
-        PriorityQueue<Integer> unsettledNodes = new PriorityQueue<>(byDist);
-        unsettledNodes.add(start);
-
-        while (!unsettledNodes.isEmpty()) {
-            int current = unsettledNodes.poll();
-
-            int distanceToCurrent = distanceTo.get(current);
-            // Measure distance to our neighbours
-            for (Integer neighbour : graph.get(current)) {
-                if (!settled.contains(neighbour)) {
-                    int neighbourDistanceFromCurrent = distanceToCurrent + 1;
-                    if (distanceTo.get(neighbour) == Integer.MAX_VALUE) {
-                        distanceTo.put(neighbour, neighbourDistanceFromCurrent);
-                        unsettledNodes.offer(neighbour);
-                    } else {
-                        if (neighbourDistanceFromCurrent < distanceTo.get(neighbour)) {
-                            distanceTo.put(neighbour, neighbourDistanceFromCurrent);
-                            unsettledNodes.offer(neighbour);
-                        }
-                    }
-                }
+    @Test
+    public void refusesToIndexTooRuggedAMap() throws Exception {
+        // Alternating a and z: every cell is its own component, far too many for the bitsets
+        int side = 620;
+        char[][] grid = new char[side][side];
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                grid[y][x] = (x + y) % 2 == 0 ? 'a' : 'z';
             }
-            settled.add(current);
         }
+        boolean refused = false;
+        try {
+            new ReachabilityIndex(grid);
+        } catch (IllegalStateException expected) {
+            refused = true;
+        }
+        assertTrue(refused);
+
+        // A budget too small for the puzzle map's bitsets
+        refused = false;
+        try {
+            new ReachabilityIndex(loadGrid("day12-actual.txt"), Long.BYTES);
+        } catch (IllegalStateException expected) {
+            refused = true;
+        }
+        assertTrue(refused);
+
+        // A single query doesn't need the index; retracing a path can climb from a onto z but never come back down
+        assertTrue(isConnected(grid, 0, 1));
+        assertTrue(!isConnected(grid, 1, 0));
+    }
+
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // A single search back from E; being a BFS the first a it reaches is the closest one
+    int getBestDownTo(char[][] grid) {
+        int[] distances = new int[grid.length * grid[0].length];
+        int a = search(grid, getElement(grid, 'E'), distances, 'a');
+        return a < 0 ? UNREACHABLE : distances[a];
+    }
+
+    // Distance from start to every cell, walking the way a path is retraced from E: a step can go up any
+    // distance but only down by one. Unreachable cells are left at UNREACHABLE.
+    int[] getShortestPathsFor(char[][] grid, int start) {
+        int[] distanceTo = new int[grid.length * grid[0].length];
+        search(grid, start, distanceTo, (char) 0);
         return distanceTo;
     }
 
-    private boolean isConnected(Map<Integer, List<Integer>> graph, int start, int end) {
-        // Check if a path exists from start to end with a BFS
-        Set<Integer> visited = new HashSet<>();
-        Queue<Integer> todo = new ArrayDeque<>();
-        todo.offer(start);
+    // Every step costs the same so a plain BFS gives shortest paths. Neighbours are worked out from the cell index
+    // rather than looked up, and distances double as the visited marks. Stops at the first cell of the target
+    // elevation, returning it, or runs to the end and returns -1.
+    private int search(char[][] grid, int start, int[] distanceTo, char target) {
+        int width = grid[0].length;
+        int height = grid.length;
+        Arrays.fill(distanceTo, UNREACHABLE);
+        distanceTo[start] = 0;
+
+        // The frontier is usually a thin band so start the queue at around the grid's perimeter and grow if needed
+        int[] queue = new int[Integer.highestOneBit(Math.max(16, 2 * (width + height))) * 2];
+        int head = 0;
+        int size = 1;
+        queue[0] = start;
+
+        while (size > 0) {
+            int current = queue[head];
+            head = (head + 1) & (queue.length - 1);
+            size--;
 
-        while (!todo.isEmpty()) {
-            int current = todo.poll();
-            if (current == end) {
-                return true;
+            int y = current / width;
+            int x = current - (y * width);
+            char c = heightOf(y, x, grid);
+            if (c == target) {
+                return current;
             }
-            // Foreach adjacent node which has no been visited queue it
-            for (Integer neighhbour : graph.get(current)) {
-                if (!visited.contains(neighhbour) && !todo.contains(neighhbour))
-                    todo.offer(neighhbour);
+
+            int next = distanceTo[current] + 1;
+            for (int direction = 0; direction < 4; direction++) {
+                int ny = y + DY[direction];
+                int nx = x + DX[direction];
+                if (ny < 0 || ny >= height || nx < 0 || nx >= width) {
+                    continue;
+                }
+                int neighbour = current + (DY[direction] * width) + DX[direction];
+                if (distanceTo[neighbour] != UNREACHABLE || c - heightOf(ny, nx, grid) > 1) {
+                    continue;
+                }
+                distanceTo[neighbour] = next;
+                if (size == queue.length) {
+                    int[] grown = new int[size * 2];
+                    int toEnd = queue.length - head;
+                    System.arraycopy(queue, head, grown, 0, toEnd);
+                    System.arraycopy(queue, 0, grown, toEnd, head);
+                    queue = grown;
+                    head = 0;
+                }
+                queue[(head + size) & (queue.length - 1)] = neighbour;
+                size++;
             }
-            visited.add(current);
         }
-        return false;
+        return -1;
     }
 
-    private int getElement(char[][] grid, char e) {
-        int start = 0;
-        for (int y = 0; y < grid.length; y++) {
-            for (int x = 0; x < grid[0].length; x++) {
-                if (grid[y][x] == e) {
-                    start = getIndexFor(y, x, grid);
+    private static final int[] DY = {-1, 1, 0, 0};
+    private static final int[] DX = {0, 0, -1, 1};
+
+    private boolean isConnected(char[][] grid, int start, int end) {
+        // Check if a path exists from start to end with a single search, which stops as soon as it gets there.
+        // These steps retrace a path, so walking forwards it is the path from end back to start.
+        // For many queries against one map build a ReachabilityIndex once and ask it instead.
+        return new PathFinder(grid).find(end, start, Mode.BFS).distance != UNREACHABLE;
+    }
+
+    // What the heap could still grow to hold, less what is already in use
+    private static long freeHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    // Answers whether one cell can reach another, stepping as the search does, without a traversal per query.
+    // Cells which can all reach each other (strongly connected components, found with Tarjan's algorithm) are
+    // collapsed to one node, leaving a DAG; each component then gets a bitset of every component it can reach.
+    // Tarjan finishes a component only after everything it reaches, so components are numbered with the DAG's
+    // edges always going to lower numbers and the bitsets can be filled in in that order.
+    // The bitsets take components^2 bits. Generated heightmaps come out at around one component per hundred cells,
+    // so a map of 16M cells already needs 2.6GB; the index refuses to build (IllegalStateException) once the bitsets
+    // would not fit in an array or within the byte budget, which defaults to the heap currently free.
+    class ReachabilityIndex {
+        private final int[] component;
+        private final int components;
+        private final int words;
+        private final long[] reach;
+
+        ReachabilityIndex(char[][] grid) {
+            this(grid, freeHeap());
+        }
+
+        ReachabilityIndex(char[][] grid, long maxBitsetBytes) {
+            int width = grid[0].length;
+            int height = grid.length;
+            int cells = width * height;
+            component = new int[cells];
+            Arrays.fill(component, -1);
+
+            // Order found, lowest order reachable, the stack of cells not yet in a component and the explicit
+            // call stack standing in for recursion: which cell and which of its directions to try next
+            int[] order = new int[cells];
+            int[] low = new int[cells];
+            int[] open = new int[cells];
+            int[] callCell = new int[cells];
+            byte[] callDirection = new byte[cells];
+            int found = 0;
+            int count = 0;
+
+            for (int root = 0; root < cells; root++) {
+                if (order[root] != 0) {
+                    continue;
+                }
+                int openTop = 0;
+                int callTop = 0;
+                order[root] = low[root] = ++found;
+                open[openTop++] = root;
+                callCell[callTop] = root;
+                callDirection[callTop++] = 0;
+
+                while (callTop > 0) {
+                    int v = callCell[callTop - 1];
+                    int direction = callDirection[callTop - 1];
+                    if (direction < 4) {
+                        callDirection[callTop - 1]++;
+                        int y = v / width;
+                        int x = v - (y * width);
+                        int ny = y + DY[direction];
+                        int nx = x + DX[direction];
+                        if (ny < 0 || ny >= height || nx < 0 || nx >= width
+                                || heightOf(y, x, grid) - heightOf(ny, nx, grid) > 1) {
+                            continue;
+                        }
+                        int w = (ny * width) + nx;
+                        if (order[w] == 0) {
+                            order[w] = low[w] = ++found;
+                            open[openTop++] = w;
+                            callCell[callTop] = w;
+                            callDirection[callTop++] = 0;
+                        } else if (component[w] < 0) {
+                            // Still open so part of the component being built
+                            low[v] = Math.min(low[v], order[w]);
+                        }
+                        continue;
+                    }
+
+                    callTop--;
+                    if (low[v] == order[v]) {
+                        int w;
+                        do {
+                            w = open[--openTop];
+                            component[w] = count;
+                        } while (w != v);
+                        count++;
+                    }
+                    if (callTop > 0) {
+                        int parent = callCell[callTop - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+            components = count;
+            words = (components + 63) >>> 6;
+            long bitsetWords = (long) components * words;
+            if (bitsetWords > Integer.MAX_VALUE - 8 || bitsetWords * Long.BYTES > maxBitsetBytes) {
+                throw new IllegalStateException(components + " components need " + (bitsetWords * Long.BYTES)
+                        + " bytes of reachability bitsets, more than the " + maxBitsetBytes + " available");
+            }
+            reach = new long[(int) bitsetWords];
+
+            // Cells grouped by component so each component can be finished before the ones which reach it
+            int[] starts = new int[components + 1];
+            for (int cell = 0; cell < cells; cell++) {
+                starts[component[cell] + 1]++;
+            }
+            for (int c = 0; c < components; c++) {
+                starts[c + 1] += starts[c];
+            }
+            int[] byComponent = new int[cells];
+            int[] next = Arrays.copyOf(starts, components);
+            for (int cell = 0; cell < cells; cell++) {
+                byComponent[next[component[cell]]++] = cell;
+            }
+
+            // Last component whose reach was merged into the one being built, so each is merged once
+            int[] merged = new int[components];
+            Arrays.fill(merged, -1);
+            for (int c = 0; c < components; c++) {
+                int base = c * words;
+                reach[base + (c >>> 6)] |= 1L << c;
+                for (int i = starts[c]; i < starts[c + 1]; i++) {
+                    int v = byComponent[i];
+                    int y = v / width;
+                    int x = v - (y * width);
+                    for (int direction = 0; direction < 4; direction++) {
+                        int ny = y + DY[direction];
+                        int nx = x + DX[direction];
+                        if (ny < 0 || ny >= height || nx < 0 || nx >= width
+                                || heightOf(y, x, grid) - heightOf(ny, nx, grid) > 1) {
+                            continue;
+                        }
+                        int d = component[(ny * width) + nx];
+                        if (d != c && merged[d] != c) {
+                            merged[d] = c;
+                            int from = d * words;
+                            for (int word = 0; word < words; word++) {
+                                reach[base + word] |= reach[from + word];
+                            }
+                        }
+                    }
                 }
             }
         }
-        return start;
+
+        int components() {
+            return components;
+        }
+
+        boolean canReach(int start, int end) {
+            int to = component[end];
+            return (reach[(component[start] * words) + (to >>> 6)] & (1L << to)) != 0;
+        }
+
+        // Which of the starts can reach the end, by position in starts
+        BitSet startsReaching(int[] starts, int end) {
+            int to = component[end];
+            int word = to >>> 6;
+            long bit = 1L << to;
+            BitSet reaching = new BitSet(starts.length);
+            for (int i = 0; i < starts.length; i++) {
+                if ((reach[(component[starts[i]] * words) + word] & bit) != 0) {
+                    reaching.set(i);
+                }
+            }
+            return reaching;
+        }
     }
 
-    private Map<Integer, List<Integer>> makeGraphFrom(char[][] grid) {
-        Map<Integer, List<Integer>> graph = new HashMap<>();
-        int height = grid.length;
-        int width = grid[0].length;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int key = getIndexFor(y, x, grid);
+    enum Mode {
+        // Out from the start until the end turns up
+        BFS,
+        // Out from both ends a level at a time, always growing the smaller frontier, until they meet
+        BIDIRECTIONAL,
+        // Best first, guided by a lower bound on the steps left
+        A_STAR
+    }
 
-                List<int[]> neighbours = new ArrayList<>();
-                if (y > 0) {
-                    neighbours.add(new int[]{y - 1, x});
+    class PathResult {
+        final int distance;
+        // How many cells had their neighbours looked at; a measure of how much of the grid was touched
+        final int expanded;
+
+        PathResult(int distance, int expanded) {
+            this.distance = distance;
+            this.expanded = expanded;
+        }
+    }
+
+    // Shortest path between a single pair of cells, walked forwards: a step can climb at most one but drop any amount.
+    // Queries only touch the cells they search; the per cell state is kept between queries and marked with the query
+    // it belongs to, so nothing has to be cleared.
+    class PathFinder {
+        private final char[][] grid;
+        private final int width;
+        private final int height;
+        // Forward search state, and the backward state for the bidirectional search
+        private final int[] seenFrom;
+        private final int[] distanceFrom;
+        private final int[] seenTo;
+        private final int[] distanceTo;
+        private int query = 0;
+
+        private int[][] levels = new int[4][64];
+        private int[] levelSizes = new int[4];
+        private long[] heap = new long[64];
+        private int heapSize;
+
+        PathFinder(char[][] grid) {
+            this.grid = grid;
+            this.width = grid[0].length;
+            this.height = grid.length;
+            int cells = width * height;
+            seenFrom = new int[cells];
+            distanceFrom = new int[cells];
+            seenTo = new int[cells];
+            distanceTo = new int[cells];
+        }
+
+        PathResult find(int from, int to, Mode mode) {
+            query++;
+            if (from == to) {
+                return new PathResult(0, 0);
+            }
+            switch (mode) {
+                case BFS:
+                    return levelSearch(from, to, false);
+                case BIDIRECTIONAL:
+                    return levelSearch(from, to, true);
+                default:
+                    return aStar(from, to);
+            }
+        }
+
+        // Expands whole levels so that once the two sides meet, the best meeting in that level is the shortest path
+        private PathResult levelSearch(int from, int to, boolean bothWays) {
+            seenFrom[from] = query;
+            distanceFrom[from] = 0;
+            seenTo[to] = query;
+            distanceTo[to] = 0;
+            levels[0][0] = from;
+            levelSizes[0] = 1;
+            levels[2][0] = to;
+            levelSizes[2] = bothWays ? 1 : 0;
+
+            int best = UNREACHABLE;
+            int expanded = 0;
+            while (levelSizes[0] > 0 && (!bothWays || levelSizes[2] > 0)) {
+                boolean forwards = !bothWays || levelSizes[0] <= levelSizes[2];
+                int level = forwards ? 0 : 2;
+                int[] seen = forwards ? seenFrom : seenTo;
+                int[] distance = forwards ? distanceFrom : distanceTo;
+                int[] otherSeen = forwards ? seenTo : seenFrom;
+                int[] otherDistance = forwards ? distanceTo : distanceFrom;
+
+                levelSizes[level + 1] = 0;
+                for (int i = 0; i < levelSizes[level]; i++) {
+                    int v = levels[level][i];
+                    expanded++;
+                    int y = v / width;
+                    int x = v - (y * width);
+                    for (int direction = 0; direction < 4; direction++) {
+                        int ny = y + DY[direction];
+                        int nx = x + DX[direction];
+                        if (ny < 0 || ny >= height || nx < 0 || nx >= width) {
+                            continue;
+                        }
+                        // Backwards we retrace steps, so the climb is checked the other way round
+                        int climb = heightOf(ny, nx, grid) - heightOf(y, x, grid);
+                        int w = (ny * width) + nx;
+                        if ((forwards ? climb : -climb) > 1 || seen[w] == query) {
+                            continue;
+                        }
+                        seen[w] = query;
+                        distance[w] = distance[v] + 1;
+                        if (otherSeen[w] == query) {
+                            best = Math.min(best, distance[w] + otherDistance[w]);
+                        }
+                        addToLevel(level + 1, w);
+                    }
                 }
-                if (y < height - 1) {
-                    neighbours.add(new int[]{y + 1, x});
+                int[] done = levels[level];
+                levels[level] = levels[level + 1];
+                levels[level + 1] = done;
+                levelSizes[level] = levelSizes[level + 1];
+
+                if (best != UNREACHABLE) {
+                    return new PathResult(best, expanded);
                 }
-                if (x > 0) {
-                    neighbours.add(new int[]{y, x - 1});
+            }
+            return new PathResult(UNREACHABLE, expanded);
+        }
+
+        private void addToLevel(int level, int cell) {
+            if (levelSizes[level] == levels[level].length) {
+                levels[level] = Arrays.copyOf(levels[level], levelSizes[level] * 2);
+            }
+            levels[level][levelSizes[level]++] = cell;
+        }
+
+        // Best first on distance so far plus a lower bound on what is left: we need at least as many steps as the
+        // Manhattan distance, and as many as the climb left since each step climbs at most one. Neither drops by more
+        // than one a step so the bound is consistent and no cell needs expanding twice.
+        private PathResult aStar(int from, int to) {
+            int toY = to / width;
+            int toX = to - (toY * width);
+            char top = heightOf(toY, toX, grid);
+
+            heapSize = 0;
+            seenFrom[from] = query;
+            distanceFrom[from] = 0;
+            push(estimate(from, toY, toX, top), from);
+            int expanded = 0;
+            while (heapSize > 0) {
+                long entry = pop();
+                int v = (int) entry;
+                int y = v / width;
+                int x = v - (y * width);
+                if ((int) (entry >>> 32) != distanceFrom[v] + estimate(v, toY, toX, top)) {
+                    // Superseded by a shorter way here
+                    continue;
                 }
-                if (x < width - 1) {
-                    neighbours.add(new int[]{y, x + 1});
+                if (v == to) {
+                    return new PathResult(distanceFrom[v], expanded);
                 }
-
+                expanded++;
                 char c = heightOf(y, x, grid);
-                List<Integer> reachableNeighbours = new ArrayList<>();
-                for (int[] neighbour : neighbours) {
-                    char d = heightOf(neighbour[0], neighbour[1], grid);
-                    int step = c - d;
-                    if (step <= 1) {
-                        reachableNeighbours.add(getIndexFor(neighbour[0], neighbour[1], grid));
+                for (int direction = 0; direction < 4; direction++) {
+                    int ny = y + DY[direction];
+                    int nx = x + DX[direction];
+                    if (ny < 0 || ny >= height || nx < 0 || nx >= width || heightOf(ny, nx, grid) - c > 1) {
+                        continue;
+                    }
+                    int w = (ny * width) + nx;
+                    int g = distanceFrom[v] + 1;
+                    if (seenFrom[w] != query || g < distanceFrom[w]) {
+                        seenFrom[w] = query;
+                        distanceFrom[w] = g;
+                        push(g + estimate(w, toY, toX, top), w);
                     }
                 }
-                graph.put(key, reachableNeighbours);
             }
+            return new PathResult(UNREACHABLE, expanded);
+        }
+
+        private int estimate(int cell, int toY, int toX, char top) {
+            int y = cell / width;
+            int x = cell - (y * width);
+            int manhattan = Math.abs(toY - y) + Math.abs(toX - x);
+            return Math.max(manhattan, top - heightOf(y, x, grid));
+        }
+
+        // Min heap of the estimate in the high half and the cell in the low half
+        private void push(int estimate, int cell) {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+            long entry = ((long) estimate << 32) | cell;
+            int i = heapSize++;
+            while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+                heap[i] = heap[(i - 1) >>> 1];
+                i = (i - 1) >>> 1;
+            }
+            heap[i] = entry;
         }
-        return graph;
+
+        private long pop() {
+            long top = heap[0];
+            long last = heap[--heapSize];
+            int i = 0;
+            while (true) {
+                int child = (2 * i) + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= last) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+
+    int getElement(char[][] grid, char e) {
+        int start = 0;
+        for (int y = 0; y < grid.length; y++) {
+            for (int x = 0; x < grid[0].length; x++) {
+                if (grid[y][x] == e) {
+                    start = getIndexFor(y, x, grid);
+                }
+            }
+        }
+        return start;
     }
 
     private char heightOf(int y, int x, char[][] grid) {
@@ -181,7 +631,7 @@ public class Day12 {
         return (y * grid[0].length) + x;
     }
 
-    private char[][] loadGrid(String filename) throws Exception {
+    char[][] loadGrid(String filename) throws Exception {
         List<char[]> list = new ArrayList<>();
         BufferedReader input = new BufferedReader(new FileReader(filename));
         while (input.ready()) {
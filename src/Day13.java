@@ -4,21 +4,50 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongToIntFunction;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Day13 {
 
     @Test
     public void day13() throws Exception {
-        assertEquals(13, sumFor(loadPairs("day13.txt")));
-        assertEquals(5852, sumFor(loadPairs("day13-actual.txt")));
+        assertEquals(13, sumFor("day13.txt"));
+        assertEquals(5852, sumFor("day13-actual.txt"));
     }
 
     @Test
     public void day13part2() throws Exception {
-        assertEquals(140, decode(loadPairs("day13.txt")));
-        assertEquals(24190, decode(loadPairs("day13-actual.txt")));
+        assertEquals(140, decode("day13.txt"));
+        assertEquals(24190, decode("day13-actual.txt"));
+    }
+
+    @Test
+    public void sortingAgreesWithRanks() throws Exception {
+        assertEquals(140, decodeBySorting("day13.txt", false));
+        assertEquals(140, decodeBySorting("day13.txt", true));
+        assertEquals(24190, decodeBySorting("day13-actual.txt", false));
+        assertEquals(24190, decodeBySorting("day13-actual.txt", true));
+
+        PacketArena arena = loadArena("day13-actual.txt");
+        List<Packet> trees = new ArrayList<>();
+        for (Packet[] pair : loadPairs("day13-actual.txt")) {
+            trees.add(pair[0]);
+            trees.add(pair[1]);
+        }
+        for (int i = 0; i < arena.size(); i++) {
+            for (int j = 0; j < arena.size(); j++) {
+                assertEquals(trees.get(i).compareTo(trees.get(j)), arena.compare(i, j));
+            }
+        }
+        // Small enough blocks that the sort really does split up
+        int[] order = arena.sortedOrder(true, 8);
+        for (int i = 1; i < order.length; i++) {
+            assertTrue(arena.compare(order[i - 1], order[i]) <= 0);
+        }
     }
 
     @Test
@@ -37,56 +66,383 @@ public class Day13 {
         assertEquals(150, loadPairs("day13-actual.txt").size());
     }
 
-    private int sumFor(List<Packet[]> pairs) {
+    @Test
+    public void rawComparisonMatchesTrees() throws Exception {
+        for (String filename : new String[]{"day13.txt", "day13-actual.txt"}) {
+            List<Packet> trees = new ArrayList<>();
+            for (Packet[] pair : loadPairs(filename)) {
+                trees.add(pair[0]);
+                trees.add(pair[1]);
+            }
+            MappedInput input = MappedInput.open(filename);
+            List<Long> starts = new ArrayList<>();
+            while (input.skipWhitespace()) {
+                starts.add(input.position());
+                input.skipLine();
+            }
+
+            // Every packet against every other, not just the pairs
+            RawComparator comparator = new RawComparator(input);
+            for (int i = 0; i < trees.size(); i++) {
+                for (int j = 0; j < trees.size(); j++) {
+                    assertEquals(trees.get(i).compareTo(trees.get(j)), comparator.compare(starts.get(i), starts.get(j)));
+                }
+            }
+        }
+    }
+
+    // Compares each pair straight off the mapped file, without parsing the packets into anything
+    int sumFor(String filename) throws IOException {
+        MappedInput input = MappedInput.open(filename);
+        RawComparator comparator = new RawComparator(input);
         int sum = 0;
-        for (int i = 0; i < pairs.size(); i++) {
-            Packet[] pair = pairs.get(i);
-            int i1 = pair[0].compareTo(pair[1]);
-            if (i1 < 1) {
-                sum = sum + (i + 1);
+        int i = 1;
+        while (input.skipWhitespace()) {
+            long left = input.position();
+            input.skipLine();
+            input.skipWhitespace();
+            long right = input.position();
+            input.skipLine();
+            if (comparator.compare(left, right) < 1) {
+                sum = sum + i;
             }
+            i++;
         }
         return sum;
     }
 
+    // Walks two packets in their text form side by side. Each side has a cursor into the input and reads one token
+    // at a time: an open bracket, a close bracket or a number, with commas skipped. Comparing a number with a list
+    // steps into the list on the other side and counts the number as wrapped in one more list; once the number has
+    // been used up, that side reads a close bracket for every list it was wrapped in before going back to the input.
+    class RawComparator {
+        private static final int OPEN = -1;
+        private static final int CLOSE = -2;
+
+        private final MappedInput input;
+        // Per side: where the cursor is, lists wrapped around the number at the cursor, and closes of those still to read
+        private final long[] cursor = new long[2];
+        private final int[] wrapped = new int[2];
+        private final int[] closing = new int[2];
+        // The number last peeked at and where it ends
+        private final long[] value = new long[2];
+        private final long[] valueEnd = new long[2];
+
+        RawComparator(MappedInput input) {
+            this.input = input;
+        }
+
+        // Negative if the packet at left is in the right order before the packet at right
+        int compare(long left, long right) {
+            cursor[0] = left;
+            cursor[1] = right;
+            wrapped[0] = wrapped[1] = 0;
+            closing[0] = closing[1] = 0;
+            int depth = 0;
+            while (true) {
+                int a = peek(0);
+                int b = peek(1);
+                if (a == OPEN && b == OPEN) {
+                    consume(0, a);
+                    consume(1, b);
+                    depth++;
+                } else if (a == CLOSE && b == CLOSE) {
+                    consume(0, a);
+                    consume(1, b);
+                    if (--depth == 0) {
+                        return 0;
+                    }
+                } else if (a == CLOSE) {
+                    // Left ran out of items first
+                    return -1;
+                } else if (b == CLOSE) {
+                    return 1;
+                } else if (a >= 0 && b >= 0) {
+                    int c = Long.compare(value[0], value[1]);
+                    if (c != 0) {
+                        return c;
+                    }
+                    consume(0, a);
+                    consume(1, b);
+                } else if (a >= 0) {
+                    // A number against a list; compare it as a list of just the number
+                    consume(1, b);
+                    wrapped[0]++;
+                    depth++;
+                } else {
+                    consume(0, a);
+                    wrapped[1]++;
+                    depth++;
+                }
+            }
+        }
 
-    private int decode(List<Packet[]> pairs) {
-        // Decompose the pairs into a single list; add the break packets and then sort.
-        // We already have the comp
+        // OPEN, CLOSE or 0 for a number, whose value is left in value[side]
+        private int peek(int side) {
+            if (closing[side] > 0) {
+                return CLOSE;
+            }
+            long at = cursor[side];
+            int c = input.byteAt(at);
+            while (c == ',') {
+                c = input.byteAt(++at);
+            }
+            cursor[side] = at;
+            if (c == '[') {
+                return OPEN;
+            } else if (c == ']') {
+                return CLOSE;
+            }
+            long number = 0;
+            while (c >= '0' && c <= '9') {
+                number = (number * 10) + (c - '0');
+                c = input.byteAt(++at);
+            }
+            value[side] = number;
+            valueEnd[side] = at;
+            return 0;
+        }
 
-        List<Packet> all = new ArrayList<>();
-        for (Packet[] pair : pairs) {
-            all.add(pair[0]);
-            all.add(pair[1]);
+        private void consume(int side, int token) {
+            if (closing[side] > 0) {
+                closing[side]--;
+            } else if (token >= 0) {
+                cursor[side] = valueEnd[side];
+                // The lists this number was wrapped in end with it
+                closing[side] = wrapped[side];
+                wrapped[side] = 0;
+            } else {
+                cursor[side]++;
+            }
         }
+    }
 
-        Packet divider1 = new Packet();
-        Packet two = new Packet();
-        two.add(new SingleValue(2));
-        divider1.add(two);
 
-        Packet six = new Packet();
-        six.add(new SingleValue(6));
-        Packet divider2 = new Packet();
-        divider2.add(six);
+    // The dividers' places in the sorted list are one more than the number of packets which sort before them,
+    // so there is no need to sort anything; each packet is compared with a divider at most twice.
+    int decode(String filename) throws IOException {
+        PacketArena arena = loadArena(filename);
+        int two = arena.add("[[2]]");
+        int six = arena.add("[[6]]");
 
-        all.add(divider1);
-        all.add(divider2);
+        // [[2]] sorts before [[6]] so is ahead of it too
+        int beforeTwo = 0;
+        int beforeSix = 1;
+        for (int i = 0; i < two; i++) {
+            if (arena.compare(i, two) < 0) {
+                beforeTwo++;
+                beforeSix++;
+            } else if (arena.compare(i, six) < 0) {
+                beforeSix++;
+            }
+        }
+        return (beforeTwo + 1) * (beforeSix + 1);
+    }
 
-        Collections.sort(all);
+    // The same answer from a full sort, for when the whole ordering is wanted anyway
+    int decodeBySorting(String filename, boolean parallel) throws IOException {
+        PacketArena arena = loadArena(filename);
+        int two = arena.add("[[2]]");
+        int six = arena.add("[[6]]");
 
         int sum = 1;
-        int i = 1;
-        for (Packet packet : all) {
-            if (packet == divider1 || packet == divider2) {
-                sum = sum * i;
+        int[] order = arena.sortedOrder(parallel, 1024);
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] == two || order[i] == six) {
+                sum = sum * (i + 1);
             }
-            i++;
         }
         return sum;
     }
 
-    private List<Packet[]> loadPairs(String filename) throws IOException {
+    PacketArena loadArena(String filename) throws IOException {
+        MappedInput input = MappedInput.open(filename);
+        PacketArena arena = new PacketArena();
+        while (input.skipWhitespace()) {
+            input.position(arena.add(input::byteAt, input.position()));
+        }
+        return arena;
+    }
+
+    // Every packet flattened into one shared int[] of tokens: OPEN, CLOSE or a number (which is never negative).
+    // Packet i's tokens start at starts[i] and run to its last CLOSE.
+    class PacketArena {
+        static final int OPEN = -1;
+        static final int CLOSE = -2;
+
+        private int[] tokens = new int[1024];
+        private int length = 0;
+        private int[] starts = new int[64];
+        private int size = 0;
+
+        int size() {
+            return size;
+        }
+
+        // Encodes a packet given as text; returns its id
+        int add(String packet) {
+            add(i -> packet.charAt((int) i), 0);
+            return size - 1;
+        }
+
+        // Encodes the packet starting at from; returns where it ends
+        long add(LongToIntFunction bytes, long from) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+            starts[size++] = length;
+            long at = from;
+            int depth = 0;
+            do {
+                int c = bytes.applyAsInt(at++);
+                if (c == '[') {
+                    token(OPEN);
+                    depth++;
+                } else if (c == ']') {
+                    token(CLOSE);
+                    depth--;
+                } else if (c >= '0' && c <= '9') {
+                    long number = c - '0';
+                    for (c = bytes.applyAsInt(at); c >= '0' && c <= '9'; c = bytes.applyAsInt(++at)) {
+                        number = (number * 10) + (c - '0');
+                    }
+                    token(Math.toIntExact(number));
+                }
+            } while (depth > 0);
+            return at;
+        }
+
+        private void token(int token) {
+            if (length == tokens.length) {
+                tokens = Arrays.copyOf(tokens, length * 2);
+            }
+            tokens[length++] = token;
+        }
+
+        // Walks the two packets' tokens side by side; comparing a number with a list steps into the list and counts
+        // the number as wrapped in one more list, which all close again once the number has been used.
+        int compare(int left, int right) {
+            int i = starts[left];
+            int j = starts[right];
+            int wrappedLeft = 0;
+            int wrappedRight = 0;
+            int closingLeft = 0;
+            int closingRight = 0;
+            int depth = 0;
+            while (true) {
+                int a = closingLeft > 0 ? CLOSE : tokens[i];
+                int b = closingRight > 0 ? CLOSE : tokens[j];
+                if (a == OPEN && b == OPEN) {
+                    i++;
+                    j++;
+                    depth++;
+                } else if (a == CLOSE && b == CLOSE) {
+                    if (closingLeft > 0) {
+                        closingLeft--;
+                    } else {
+                        i++;
+                    }
+                    if (closingRight > 0) {
+                        closingRight--;
+                    } else {
+                        j++;
+                    }
+                    if (--depth == 0) {
+                        return 0;
+                    }
+                } else if (a == CLOSE) {
+                    // Left ran out of items first
+                    return -1;
+                } else if (b == CLOSE) {
+                    return 1;
+                } else if (a >= 0 && b >= 0) {
+                    if (a != b) {
+                        return a < b ? -1 : 1;
+                    }
+                    i++;
+                    j++;
+                    closingLeft = wrappedLeft;
+                    wrappedLeft = 0;
+                    closingRight = wrappedRight;
+                    wrappedRight = 0;
+                } else if (a >= 0) {
+                    j++;
+                    wrappedLeft++;
+                    depth++;
+                } else {
+                    i++;
+                    wrappedRight++;
+                    depth++;
+                }
+            }
+        }
+
+        // Packet ids in sorted order; a merge sort of the ids, split across the fork join pool if parallel
+        int[] sortedOrder(boolean parallel, int blockSize) {
+            int[] ids = new int[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = i;
+            }
+            SortTask sort = new SortTask(ids, new int[size], 0, size, parallel ? blockSize : Integer.MAX_VALUE);
+            if (parallel) {
+                ForkJoinPool.commonPool().invoke(sort);
+            } else {
+                sort.compute();
+            }
+            return ids;
+        }
+
+        class SortTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int[] ids;
+            private final int[] scratch;
+            private final int from;
+            private final int to;
+            private final int blockSize;
+
+            SortTask(int[] ids, int[] scratch, int from, int to, int blockSize) {
+                this.ids = ids;
+                this.scratch = scratch;
+                this.from = from;
+                this.to = to;
+                this.blockSize = blockSize;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= 1) {
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                SortTask left = new SortTask(ids, scratch, from, mid, blockSize);
+                SortTask right = new SortTask(ids, scratch, mid, to, blockSize);
+                if (to - from > blockSize) {
+                    invokeAll(left, right);
+                } else {
+                    left.compute();
+                    right.compute();
+                }
+
+                // Merge the halves through the scratch space; ties keep the earlier packet first
+                System.arraycopy(ids, from, scratch, from, to - from);
+                int i = from;
+                int j = mid;
+                int k = from;
+                while (i < mid && j < to) {
+                    ids[k++] = compare(scratch[j], scratch[i]) < 0 ? scratch[j++] : scratch[i++];
+                }
+                while (i < mid) {
+                    ids[k++] = scratch[i++];
+                }
+                while (j < to) {
+                    ids[k++] = scratch[j++];
+                }
+            }
+        }
+    }
+
+    List<Packet[]> loadPairs(String filename) throws IOException {
         BufferedReader input = new BufferedReader(new FileReader(filename));
         List<Packet[]> pairs = new ArrayList<>();
         while (input.ready()) {
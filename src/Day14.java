@@ -1,9 +1,6 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -23,7 +20,7 @@ public class Day14 {
         assertEquals(25248, simulatePart2(loadFile("day14-actual.txt")));
     }
 
-    private int simulate(Set<Point> grid) {
+    int simulate(Set<Point> grid) {
         final long base = getBaseOf(grid);
 
         int r = 0;
@@ -56,7 +53,7 @@ public class Day14 {
         return r - 1;
     }
 
-    private int simulatePart2(Set<Point> grid) {
+    int simulatePart2(Set<Point> grid) {
         final long base = getBaseOf(grid);
         final long floor = base + 2;
 
@@ -92,19 +89,15 @@ public class Day14 {
         return grid.stream().map(point -> point.y).max(Long::compare).orElse(0L);
     }
 
-    private Set<Point> loadFile(String filename) throws Exception {
+    Set<Point> loadFile(String filename) throws Exception {
         Set<Point> grid = new HashSet<>();
-        BufferedReader input = new BufferedReader(new FileReader(filename));
-        while (input.ready()) {
+        MappedInput input = MappedInput.open(filename);
+        while (input.skipWhitespace()) {
             // Each trace is on a single line of separate point pairs
-            String line = input.readLine();
-            String[] pairs = line.split(" -> ");
-
-            List<Point> wayPoints = Arrays.stream(pairs).map(pair -> {
-                        List<Long> coords = Arrays.stream(pair.split(",")).map(Long::parseLong).collect(Collectors.toList());
-                        return new Point(coords.get(0), coords.get(1));
-                    }
-            ).collect(Collectors.toList());
+            List<Point> wayPoints = new ArrayList<>();
+            while (!input.atEndOfLine()) {
+                wayPoints.add(new Point(input.nextLong(), input.nextLong()));
+            }
 
             // Foreach waypoint, trace out the points to the next
             for (int i = 0; i < wayPoints.size() - 1; i++) {
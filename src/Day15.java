@@ -1,7 +1,5 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -82,7 +80,7 @@ public class Day15 {
         throw new RuntimeException();
     }
 
-    private long sweep(List<Sensor> sensors, long y) {
+    long sweep(List<Sensor> sensors, long y) {
         // Find the x range
         long left = sensors.stream().map(s -> {return s.x - s.range;}).min(Long::compare).get();
         long right = sensors.stream().map(s -> {return s.x + s.range;}).max(Long::compare).get();
@@ -110,17 +108,15 @@ public class Day15 {
         return inRange;
     }
 
-    private List<Sensor> parseFile(String filename) throws Exception {
+    List<Sensor> parseFile(String filename) throws Exception {
         List<Sensor> sensors = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        while(reader.ready()) {
-            String numbers = reader.readLine().replaceAll("[a-z|A-z|=|,|:]", "").replaceAll("\\s+", " ").trim();
-            String[] split = numbers.split(" ");
-
-            long x = Long.parseLong(split[0]);
-            long y = Long.parseLong(split[1]);
-            long cbx = Long.parseLong(split[2]);
-            long cby = Long.parseLong(split[3]);
+        MappedInput input = MappedInput.open(filename);
+        while(input.skipWhitespace()) {
+            // The number parsing steps over all the words between the coordinates
+            long x = input.nextLong();
+            long y = input.nextLong();
+            long cbx = input.nextLong();
+            long cby = input.nextLong();
 
             sensors.add(new Sensor(x, y, cbx, cby));
         }
@@ -25,7 +25,7 @@ public class Day16 {
         assertEquals(2077, findBestOutcomeFor(parseGraph("day16-actual.txt")));
     }
 
-    private int findBestOutcomeFor(Map<String, List<String>> graph) {
+    int findBestOutcomeFor(Map<String, List<String>> graph) {
         // Knowing the distances between all the nodes is will let us know the time cost valves in any order
         distances = measureDistancesBetweenNodes(graph);
 
@@ -178,7 +178,7 @@ public class Day16 {
         return dists;
     }
 
-    private Map<String, List<String>> parseGraph(String filename) throws Exception {
+    Map<String, List<String>> parseGraph(String filename) throws Exception {
         HashMap<String, List<String>> graph = new HashMap<>();
 
         // Lets use a regex for the practise even though we probably shouldn't
@@ -77,7 +77,7 @@ public class Day17 {
         return getMaxHeight(fixed);
     }
 
-    private Set<Point> buildStack(String filename, long toDrop) throws Exception {
+    Set<Point> buildStack(String filename, long toDrop) throws Exception {
         Queue<Integer> wind = parseFile(filename);
         Queue<Sprite> sprites = makeSprites();
 
@@ -1,7 +1,5 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -22,7 +20,7 @@ public class Day18 {
         assertEquals(2518L, getExternalSurfaceArea(parseFile("day18-actual.txt")));
     }
 
-    private long getExternalSurfaceArea(Set<Point> points) {
+    long getExternalSurfaceArea(Set<Point> points) {
         // Discover the list of points discoverable from outside using a flood fill BFS;
         // use a bounding box with room for water to flow all around the points.
         // Count all surfaces visible to newly found water cells which interface with points.
@@ -75,7 +73,7 @@ public class Day18 {
         return surfaces;
     }
 
-    private long getInternalAndExternalSurfaceAreaOf(Set<Point> points) {
+    long getInternalAndExternalSurfaceAreaOf(Set<Point> points) {
         // Knowing the extreme dimensions would be useful
         long minX = points.stream().map(p -> p.x).min(Long::compare).get();
         long maxX = points.stream().map(p -> p.x).max(Long::compare).get();
@@ -130,14 +128,13 @@ public class Day18 {
         return sum;
     }
 
-    private Set<Point> parseFile(String filename) throws IOException {
+    Set<Point> parseFile(String filename) throws IOException {
         Set<Point> points = new HashSet<>();
-        BufferedReader input = new BufferedReader(new FileReader(filename));
-        while (input.ready()) {
-            String[] line = input.readLine().split(",");
-            long x = Long.parseLong(line[0]);
-            long y = Long.parseLong(line[1]);
-            long z = Long.parseLong(line[2]);
+        MappedInput input = MappedInput.open(filename);
+        while (input.skipWhitespace()) {
+            long x = input.nextLong();
+            long y = input.nextLong();
+            long z = input.nextLong();
             points.add(new Point(x, y, z));
         }
         return points;
@@ -1,12 +1,9 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -19,114 +16,122 @@ public class Day2 {
     public static final char LOSE = 'X';
     public static final char WIN = 'Z';
 
+    // Every round is one of 9 combinations of their move and our column so all the scoring can be done up front.
+    // Tables are indexed by (them * 3) + column where both are 0, 1 or 2.
+    private static final int[] PART1_SCORES = new int[9];
+    private static final int[] PART2_SCORES = new int[9];
+
+    static {
+        for (int them = 0; them < 3; them++) {
+            for (int column = 0; column < 3; column++) {
+                // Part 1 decrypts X, Y, Z straight to rock, paper, scissors
+                PART1_SCORES[(them * 3) + column] = scoreFor(them, column);
+
+                // Part 2 reads the column as lose, draw or win; losing is the move before theirs, winning the one after
+                int you = (them + column + 2) % 3;
+                PART2_SCORES[(them * 3) + column] = scoreFor(them, you);
+            }
+        }
+    }
+
     @Test
     public void day2() throws Exception {
-        int sum = getSum(new BufferedReader(new FileReader("day2.txt")));
+        long sum = getSum("day2.txt");
         assertEquals(15, sum);
 
-        sum = getSum(new BufferedReader(new FileReader("day2-actual.txt")));
+        sum = getSum("day2-actual.txt");
         assertEquals(13682, sum);
     }
 
     @Test
     public void part2() throws Exception {
-        assertEquals(12, getPart2Sum(new BufferedReader(new FileReader("day2.txt"))));
-        assertEquals(12881, getPart2Sum(new BufferedReader(new FileReader("day2-actual.txt"))));
+        assertEquals(12, getPart2Sum("day2.txt"));
+        assertEquals(12881, getPart2Sum("day2-actual.txt"));
     }
 
-    private int getPart2Sum(BufferedReader input) throws Exception {
-        List<char[]> guide = loadGuide(input);
-
-        Map<Character, Character> beats = new HashMap<>();
-        beats.put(ROCK, SCISSORS);
-        beats.put(SCISSORS, PAPER);
-        beats.put(PAPER, ROCK);
-
-        int sum = 0;
-        for (char[] round : guide) {
-            // Foreach round we know there move and the outcome we need; we need to detemine out move
-            char them = round[0];
-            char outcome = round[1];
-
-            char you = them;
-            if (outcome == LOSE) {
-                you = beats.get(them);
-
-            } else if (outcome == WIN) {
-                // Iterate the winners to find something which beats them
-                for (char key: beats.keySet()) {
-                    if (beats.get(key) == them) {
-                        you = key;
-                    }
-                }
-            }
-            sum += getOutcomeScore(them, you) + getMoveValue(you);
+    @Test
+    public void scoreTables() {
+        assertEquals(8, PART1_SCORES[index(ROCK, 'Y')]);
+        assertEquals(1, PART1_SCORES[index(PAPER, 'X')]);
+        assertEquals(6, PART1_SCORES[index(SCISSORS, 'Z')]);
+
+        assertEquals(4, PART2_SCORES[index(ROCK, 'Y')]);
+        assertEquals(1, PART2_SCORES[index(PAPER, LOSE)]);
+        assertEquals(7, PART2_SCORES[index(SCISSORS, WIN)]);
+    }
+
+    @Test
+    public void parallelBatchMatchesSerial() throws Exception {
+        byte[] guide = Files.readAllBytes(Path.of("day2-actual.txt"));
+        for (int partitions = 1; partitions <= 16; partitions++) {
+            assertEquals(13682, scoreInParallel(guide, PART1_SCORES, partitions));
+            assertEquals(12881, scoreInParallel(guide, PART2_SCORES, partitions));
         }
 
-        return sum;
+        MappedInput mapped = MappedInput.open("day2-actual.txt");
+        for (int partitions = 1; partitions <= 16; partitions++) {
+            assertEquals(13682, scoreInParallel(mapped, PART1_SCORES, partitions));
+            assertEquals(12881, scoreInParallel(mapped, PART2_SCORES, partitions));
+        }
     }
 
-    private int getSum(BufferedReader input) throws IOException {
-        Map<Character, Character> decryptionKey = new HashMap<>();
-        decryptionKey.put('X', ROCK);
-        decryptionKey.put('Y', PAPER);
-        decryptionKey.put('Z', SCISSORS);
-
-        // Read the into a list of lists; we need to decrypt the 2nd columns
-        List<char[]> encrypted = loadGuide(input);
-
-        List<char[]> guide = new ArrayList<>();
-        for (char[] round : encrypted) {
-            char key = round[1];
-            Character character = decryptionKey.get(key);
-            char[] chars = {round[0], character};
-            guide.add(chars);
-        }
+    long getPart2Sum(String filename) throws IOException {
+        return score(MappedInput.open(filename), PART2_SCORES);
+    }
 
-        // Then iterate the list summing up the scores we got for following the guide
-        int sum = 0;
-        for (char[] round : guide) {
-            char them = round[0];
-            char you = round[1];
-            int moveValue = getMoveValue(you);
-            int outcomeScore = getOutcomeScore(them, you);
-            sum += moveValue + outcomeScore;
+    long getSum(String filename) throws IOException {
+        return score(MappedInput.open(filename), PART1_SCORES);
+    }
+
+    // Walks the raw bytes of the guide from its position to its limit; each round is their move, a space and our column.
+    // The loop is just two subtractions and a table lookup per round.
+    private long score(MappedInput guide, int[] table) {
+        long sum = 0;
+        long i = guide.position();
+        long to = guide.limit();
+        while (i + 2 < to) {
+            int them = guide.byteAt(i);
+            if (them < ROCK || them > SCISSORS) {
+                i++;    // Line endings
+                continue;
+            }
+            sum += table[((them - ROCK) * 3) + (guide.byteAt(i + 2) - 'X')];
+            i += 3;
         }
         return sum;
     }
 
-    private Integer getMoveValue(char move) {
-        Map<Character, Integer> moveValues = new HashMap<>();
-        moveValues.put(ROCK, 1);
-        moveValues.put(PAPER, 2);
-        moveValues.put(SCISSORS, 3);
-        return moveValues.get(move);
+    long scoreInParallel(byte[] guide, int[] table, int partitions) {
+        return scoreInParallel(MappedInput.wrap(guide), table, partitions);
     }
 
-    private int getOutcomeScore(char them, char move) {
-        Map<Character, Character> beats = new HashMap<>();
-        beats.put(ROCK, SCISSORS);
-        beats.put(SCISSORS, PAPER);
-        beats.put(PAPER, ROCK);
-
-        int outcomeScore = 0;
-        if (move == them) {
-            // Draw
-            outcomeScore = 3;
-        } else if (beats.get(move) == them) {
-            // Our win
-            outcomeScore = 6;
+    // Splits the guide into slices which start on a line boundary and scores them side by side
+    long scoreInParallel(MappedInput guide, int[] table, int partitions) {
+        long size = guide.size();
+        long[] starts = new long[partitions + 1];
+        for (int p = 1; p < partitions; p++) {
+            long start = Math.max(starts[p - 1], (size * p) / partitions);
+            while (start > 0 && start < size && guide.byteAt(start - 1) != '\n') {
+                start++;
+            }
+            starts[p] = start;
         }
-        return outcomeScore;
+        starts[partitions] = size;
+
+        return IntStream.range(0, partitions).parallel()
+                .mapToLong(p -> score(guide.slice(starts[p], starts[p + 1]), table))
+                .sum();
     }
 
-    private List<char[]> loadGuide(BufferedReader input) throws IOException {
-        List<char[]> guide = new ArrayList<>();
-        while (input.ready()) {
-            String line = input.readLine();
-            guide.add(new char[]{line.charAt(0), line.charAt(2)});
-        }
-        return guide;
+    private static int index(char them, char column) {
+        return ((them - ROCK) * 3) + (column - 'X');
+    }
+
+    private static int scoreFor(int them, int you) {
+        int moveValue = you + 1;
+        // 0 if we lost, 1 for a draw, 2 if we won; each move beats the one before it
+        int outcome = (you - them + 4) % 3;
+        return moveValue + (outcome * 3);
     }
 
 }
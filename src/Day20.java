@@ -1,7 +1,5 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.*;
@@ -28,7 +26,7 @@ public class Day20 {
         assertEquals(new BigInteger("1428396909280"), decode(mix(scaled, 10))); // TODO does the double linked list mixer run measurably faster?
     }
 
-    private Node mix(List<BigInteger> input, int times) {
+    Node mix(List<BigInteger> input, int times) {
         Node head = makeLinkedListFrom(input);
 
         // Because nodes are going to be jumping around let's use some memory to remember the order of they should be called in
@@ -79,7 +77,7 @@ public class Day20 {
         return head;
     }
 
-    private BigInteger decode(Node mixed) {
+    BigInteger decode(Node mixed) {
         // Run up to the 0 node
         Node node = mixed;
         while (node.next != null) {
@@ -154,11 +152,11 @@ public class Day20 {
     }
 
 
-    private List<BigInteger> parseInput(String filename) throws IOException {
+    List<BigInteger> parseInput(String filename) throws IOException {
         List<BigInteger> input = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        while (reader.ready()) {
-            input.add(new BigInteger(reader.readLine()));
+        MappedInput reader = MappedInput.open(filename);
+        while (reader.skipWhitespace()) {
+            input.add(BigInteger.valueOf(reader.nextLong()));
         }
         return input;
     }
@@ -1,7 +1,5 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayDeque;
@@ -111,7 +109,7 @@ public class Day21 {
         return inLeft || inRight;
     }
 
-    private long findPart1RootValue(Node root) {
+    long findPart1RootValue(Node root) {
         // Would kind of hope that the calls form a nice 2 tree which we can just traverse in the right order
         visit(root);
         // Yep it is!
@@ -143,27 +141,28 @@ public class Day21 {
         }
     }
 
-    private Node parseInput(String fileName) throws IOException {
+    Node parseInput(String fileName) throws IOException {
         // Read the file; create a node the first appearance of each monkey; we may need to update these nodes as further details appear
         Map<String, Node> nodesByName = new HashMap<>();
 
-        BufferedReader input = new BufferedReader(new FileReader(fileName));
-        while (input.ready()) {
-            String line = input.readLine();
+        MappedInput input = MappedInput.open(fileName);
+        while (input.skipWhitespace()) {
             // Line is node name followed by it's defination.
-            String name = line.split(":")[0];
-            String definition = line.split(":")[1].trim();
+            MappedInput.Token nameToken = input.nextToken();
+            String name = nameToken.subSequence(0, nameToken.length() - 1).toString();   // Drop the colon
 
             // Create this node if it has not been previously referenced
             Node node = getOrCreate(name, nodesByName);
 
-            if (definition.matches("\\d+")) {
-                node.value = new BigInteger(definition);
+            input.skipWhitespace();
+            int c = input.peek();
+            if (c >= '0' && c <= '9') {
+                node.value = BigInteger.valueOf(input.nextLong());
             } else {
                 // Parse out the definition
-                String leftName = definition.split(" ")[0];
-                String operation = definition.split(" ")[1];
-                String rightName = definition.split(" ")[2];
+                String leftName = input.nextToken().toString();
+                String operation = input.nextToken().toString();
+                String rightName = input.nextToken().toString();
 
                 node.left = getOrCreate(leftName, nodesByName);
                 node.right = getOrCreate(rightName, nodesByName);
@@ -1,9 +1,8 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -21,74 +20,93 @@ public class Day3 {
         assertEquals(2434, getBadgesSumFor("day3-actual.txt"));
     }
 
-    private int getBadgesSumFor(String filename) throws IOException {
-        // Iterate the file
-        // For every 3 lines set up a count map to count how many lines each char appears in.
-        // After the 3rd line, check this map; there should be exactly 1 key with a value of 3.
-        List<Character> badges = new ArrayList<>();
-        int i = 1;
-        Map<Character, Integer> counts = new HashMap<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        while (reader.ready()) {
-            // Read each line
-            String line = reader.readLine();
-            Set<Character> uniqueInLine = new HashSet<>();
-            for (char c : line.toCharArray()) {
-                uniqueInLine.add(c);
-            }
-            for (char c : uniqueInLine) {
-                int s = counts.getOrDefault(c, 0);
-                counts.put(c, s + 1);
-            }
+    @Test
+    public void badgesForOtherGroupSizes() throws Exception {
+        // A group of one is every distinct item in each rucksack
+        assertEquals(2278, getBadgesSumFor("day3.txt", 1));
+        // Pairs of elves in the example share several items
+        assertEquals(371, getBadgesSumFor("day3.txt", 2));
+        // Nothing is common to all six
+        assertEquals(0, getBadgesSumFor("day3.txt", 6));
+    }
+
+    @Test
+    public void windowsLineEndings() throws Exception {
+        Path crlf = Files.createTempFile("day3", ".txt");
+        Files.writeString(crlf, Files.readString(Path.of("day3.txt")).replace("\r\n", "\n").replace("\n", "\r\n"));
+        assertEquals(157, getSumFor(crlf.toString()));
+        assertEquals(70, getBadgesSumFor(crlf.toString()));
+    }
+
+    int getBadgesSumFor(String filename) throws IOException {
+        return getBadgesSumFor(filename, 3);
+    }
+
+    int getBadgesSumFor(String filename, int groupSize) throws IOException {
+        // Each rucksack's contents is a bit mask of the priorities in it.
+        // ANDing together the masks of a group leaves only the badge; a trailing incomplete group is ignored.
+        MappedInput input = MappedInput.open(filename);
+        int sum = 0;
+        int i = 0;
+        long common = ~0L;
+        while (input.skipWhitespace()) {
+            long start = input.position();
+            long end = endOfLine(input);
+            common &= maskOf(input, start, end);
             i++;
 
-            if (i > 3) {
-                Character badge = null;
-                for (char k : counts.keySet()) {
-                    if (counts.get(k) == 3) {
-                        badge = k;
-                    }
-                }
-                badges.add(badge);
-                counts = new HashMap<>();
-                i = 1;
+            if (i == groupSize) {
+                sum += sumOfPriorities(common);
+                common = ~0L;
+                i = 0;
             }
         }
+        return sum;
+    }
 
-        // Sum up the priorities of these badges
-        return badges.stream().map(this::priorityOf).mapToInt(c -> c).sum();
+    int getSumFor(String filename) throws IOException {
+        // Mask each compartment; the items in both are the AND of the two masks
+        MappedInput input = MappedInput.open(filename);
+        int sum = 0;
+        while (input.skipWhitespace()) {
+            long start = input.position();
+            long end = endOfLine(input);
+            long centre = start + ((end - start) / 2);
+            sum += sumOfPriorities(maskOf(input, start, centre) & maskOf(input, centre, end));
+        }
+        return sum;
     }
 
-    private int getSumFor(String filename) throws IOException {
-        // Push these to a set
-        // Sum up their scores
-        List<Character> duplicates = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        while (reader.ready()) {
-            // Read each line
-            String line = reader.readLine();
-            // Split into left and right compartments
-            int centerIndex = line.length() / 2;
-            String left = line.substring(0, centerIndex);
-            String right = line.substring(centerIndex);
-
-            // Load the left compartment into a set
-            Set<Character> leftContents = new HashSet<>();
-            for (char c : left.toCharArray()) {
-                leftContents.add(c);
-            }
+    // Item priorities run from 1 to 52 so each one gets its own bit of a long
+    private long maskOf(MappedInput input, long from, long to) {
+        long mask = 0L;
+        for (long i = from; i < to; i++) {
+            mask |= 1L << priorityOf((char) input.byteAt(i));
+        }
+        return mask;
+    }
 
-            // Detect which members of the right compartment are in the set
-            Set<Character> lineDuplicates = new HashSet<>();
-            for (char c : right.toCharArray()) {
-                if (leftContents.contains(c)) {
-                    lineDuplicates.add(c);
-                }
-            }
-            duplicates.addAll(lineDuplicates);
+    private int sumOfPriorities(long mask) {
+        int sum = 0;
+        while (mask != 0) {
+            sum += Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
         }
+        return sum;
+    }
 
-        return duplicates.stream().map(this::priorityOf).mapToInt(c -> c).sum();
+    // Leaves the input at the start of the next line and returns where this one ended, before any \r\n or \n
+    private long endOfLine(MappedInput input) {
+        long start = input.position();
+        input.skipLine();
+        long end = input.position();
+        if (end > start && input.byteAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && input.byteAt(end - 1) == '\r') {
+            end--;
+        }
+        return end;
     }
 
     public int priorityOf(char c) {
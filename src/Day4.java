@@ -1,14 +1,10 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Day4 {
 
@@ -24,43 +20,88 @@ public class Day4 {
         assertEquals(938, countOverlappingPairs(parsePairs("day4-actual.txt")));
     }
 
-    private int countOverlappingPairs(List<List<int[]>> pairs) {
+    @Test
+    public void intervalIndexMatchesBruteForce() throws Exception {
+        for (String filename : new String[]{"day4.txt", "day4-actual.txt"}) {
+            Assignments assignments = parsePairs(filename);
+            IntervalIndex index = new IntervalIndex(assignments);
+
+            for (int lo = 0; lo <= 100; lo += 7) {
+                for (int hi = lo; hi <= 100; hi += 11) {
+                    int overlapping = 0;
+                    int containing = 0;
+                    int containedBy = 0;
+                    for (int i = 0; i < assignments.size; i++) {
+                        int[] range = {assignments.lo[i], assignments.hi[i]};
+                        int[] query = {lo, hi};
+                        if (overlaps(range, query)) {
+                            overlapping++;
+                        }
+                        if (covers(range, query)) {
+                            containing++;
+                        }
+                        if (covers(query, range)) {
+                            containedBy++;
+                        }
+                    }
+                    assertEquals(overlapping, index.countOverlapping(lo, hi));
+                    assertEquals(containing, index.countContaining(lo, hi));
+                    assertEquals(containedBy, index.countContainedBy(lo, hi));
+                }
+            }
+
+            long pairs = 0;
+            for (int i = 0; i < assignments.size; i++) {
+                for (int j = i + 1; j < assignments.size; j++) {
+                    if (overlaps(new int[]{assignments.lo[i], assignments.hi[i]}, new int[]{assignments.lo[j], assignments.hi[j]})) {
+                        pairs++;
+                    }
+                }
+            }
+            assertEquals(pairs, index.countAllOverlappingPairs());
+
+            long[] visited = new long[1];
+            index.forEachOverlappingPair((a, b) -> {
+                assertTrue(overlaps(new int[]{assignments.lo[a], assignments.hi[a]}, new int[]{assignments.lo[b], assignments.hi[b]}));
+                visited[0]++;
+            });
+            assertEquals(pairs, visited[0]);
+        }
+    }
+
+    int countOverlappingPairs(Assignments assignments) {
         // For each pair, look for those where the  ranges overlap
         int sum = 0;
-        for (List<int[]> pair : pairs) {
-            if (overlaps(pair.get(0), pair.get(1))) {
+        for (int i = 0; i < assignments.size; i += 2) {
+            if (assignments.lo[i] <= assignments.hi[i + 1] && assignments.lo[i + 1] <= assignments.hi[i]) {
                 sum++;
             }
         }
         return sum;
     }
 
-    private int countFullyOverlappingPairs(List<List<int[]>> pairs) {
+    int countFullyOverlappingPairs(Assignments assignments) {
         // For each pair, look for those where one range cover the over
         int sum = 0;
-        for (List<int[]> pair : pairs) {
-            if (covers(pair.get(0), pair.get(1)) ||
-                    covers(pair.get(1), pair.get(0))) {
+        for (int i = 0; i < assignments.size; i += 2) {
+            boolean firstCoversSecond = assignments.lo[i] <= assignments.lo[i + 1] && assignments.hi[i] >= assignments.hi[i + 1];
+            boolean secondCoversFirst = assignments.lo[i + 1] <= assignments.lo[i] && assignments.hi[i + 1] >= assignments.hi[i];
+            if (firstCoversSecond || secondCoversFirst) {
                 sum++;
             }
         }
         return sum;
     }
 
-    private List<List<int[]>> parsePairs(String fileName) throws IOException {
-        BufferedReader input = new BufferedReader(new FileReader(fileName));
-        List<List<int[]>> pairs = new ArrayList<>();
-        while (input.ready()) {
-            String line = input.readLine();
-            // Split the line and parse into ranges
-            List<int[]> ranges = new ArrayList<>();
-            for (String rangeString : line.split(",")) {
-                List<Integer> collect = Arrays.stream(rangeString.split("-")).map(Integer::parseInt).collect(Collectors.toList());
-                ranges.add(new int[]{collect.get(0), collect.get(1)});
-            }
-            pairs.add(ranges);
+    Assignments parsePairs(String fileName) throws IOException {
+        MappedInput input = MappedInput.open(fileName);
+        Assignments assignments = new Assignments();
+        while (input.skipWhitespace()) {
+            // Each line is a pair of ranges; the separators are skipped over by the number parsing
+            assignments.add(input.nextInt(), input.nextInt());
+            assignments.add(input.nextInt(), input.nextInt());
         }
-        return pairs;
+        return assignments;
     }
 
     private boolean covers(int[] a, int[] b) {
@@ -74,4 +115,156 @@ public class Day4 {
         return a[0] <= b[1];
     }
 
+    // Every section range in the file, flattened; the two elves of line i are at 2i and 2i + 1
+    class Assignments {
+        int[] lo = new int[16];
+        int[] hi = new int[16];
+        int size = 0;
+
+        void add(int from, int to) {
+            if (size == lo.length) {
+                lo = Arrays.copyOf(lo, size * 2);
+                hi = Arrays.copyOf(hi, size * 2);
+            }
+            lo[size] = from;
+            hi[size] = to;
+            size++;
+        }
+    }
+
+    interface PairConsumer {
+        void accept(int a, int b);
+    }
+
+    // Sorted endpoint arrays answering range queries against every assignment in O(log n) (containment in O(log^2 n))
+    // rather than checking each one.
+    class IntervalIndex {
+        private final Assignments assignments;
+        private final int n;
+        private final int[] sortedStarts;
+        private final int[] sortedEnds;
+        // Assignment ids ordered by start
+        private final int[] byStart;
+        // A merge sort tree over the ends taken in start order; level l is made of sorted blocks of 2^l ends.
+        // Lets us count ends above or below a value within any prefix of the start ordering.
+        private final int[][] endLevels;
+
+        IntervalIndex(Assignments assignments) {
+            this.assignments = assignments;
+            this.n = assignments.size;
+
+            // Sort ids by start without boxing by packing the start above the id
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                packed[i] = ((long) assignments.lo[i] << 32) | i;
+            }
+            Arrays.sort(packed);
+            byStart = new int[n];
+            sortedStarts = new int[n];
+            for (int i = 0; i < n; i++) {
+                byStart[i] = (int) packed[i];
+                sortedStarts[i] = assignments.lo[byStart[i]];
+            }
+            sortedEnds = Arrays.copyOf(assignments.hi, n);
+            Arrays.sort(sortedEnds);
+
+            int levels = 1;
+            while ((1 << (levels - 1)) < n) {
+                levels++;
+            }
+            endLevels = new int[levels][];
+            endLevels[0] = new int[n];
+            for (int i = 0; i < n; i++) {
+                endLevels[0][i] = assignments.hi[byStart[i]];
+            }
+            for (int l = 1; l < levels; l++) {
+                int width = 1 << l;
+                int[] level = Arrays.copyOf(endLevels[l - 1], n);
+                for (int from = 0; from < n; from += width) {
+                    Arrays.sort(level, from, Math.min(n, from + width));
+                }
+                endLevels[l] = level;
+            }
+        }
+
+        // Overlapping is everything except those which start after hi or end before lo; those two sets can't meet.
+        public int countOverlapping(int lo, int hi) {
+            int startAfter = n - upperBound(sortedStarts, 0, n, hi);
+            int endBefore = lowerBound(sortedEnds, 0, n, lo);
+            return n - startAfter - endBefore;
+        }
+
+        // Assignments which start at or before lo and end at or after hi
+        public int countContaining(int lo, int hi) {
+            int p = upperBound(sortedStarts, 0, n, lo);
+            return p - countEndsBelowInPrefix(p, hi);
+        }
+
+        // Assignments which start at or after lo and end at or before hi
+        public int countContainedBy(int lo, int hi) {
+            int p = lowerBound(sortedStarts, 0, n, lo);
+            return countEndsBelowInPrefix(n, hi + 1) - countEndsBelowInPrefix(p, hi + 1);
+        }
+
+        // Sweep in start order; the later assignments overlapping this one are exactly those which start before it ends
+        public long countAllOverlappingPairs() {
+            long pairs = 0;
+            for (int i = 0; i < n; i++) {
+                int end = assignments.hi[byStart[i]];
+                pairs += upperBound(sortedStarts, i + 1, n, end) - (i + 1);
+            }
+            return pairs;
+        }
+
+        public void forEachOverlappingPair(PairConsumer consumer) {
+            for (int i = 0; i < n; i++) {
+                int a = byStart[i];
+                int last = upperBound(sortedStarts, i + 1, n, assignments.hi[a]);
+                for (int j = i + 1; j < last; j++) {
+                    consumer.accept(a, byStart[j]);
+                }
+            }
+        }
+
+        // How many of the first p assignments in start order end strictly before value
+        private int countEndsBelowInPrefix(int p, int value) {
+            int count = 0;
+            int pos = 0;
+            for (int l = endLevels.length - 1; l >= 0; l--) {
+                int width = 1 << l;
+                if (p - pos >= width) {
+                    count += lowerBound(endLevels[l], pos, pos + width, value) - pos;
+                    pos += width;
+                }
+            }
+            return count;
+        }
+
+        // First index in [from, to) holding a value >= key
+        private int lowerBound(int[] a, int from, int to, int key) {
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (a[mid] < key) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            return from;
+        }
+
+        // First index in [from, to) holding a value > key
+        private int upperBound(int[] a, int from, int to, int key) {
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (a[mid] <= key) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            return from;
+        }
+    }
+
 }
@@ -1,10 +1,7 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -12,143 +9,166 @@ public class Day5 {
 
     @Test
     public void day5() throws Exception {
-        // Parse the file.
-        // Reverse the lines
-        // Push the contains onto indexed stacks
-        // Assume we are given the number of stacks
+        // Parse the file in one pass.
+        // Remember where the layers of crates are until the label row tells us how many stacks there are
+        // Push the crates onto indexed stacks from the bottom layer up
+        // Apply each move as it is read
         // Pop off the top items
-        assertEquals("CMZ", process("day5.txt", 3));
-        assertEquals("HBTMTBSDC", process("day5-actual.txt", 9));
+        assertEquals("CMZ", process("day5.txt"));
+        assertEquals("HBTMTBSDC", process("day5-actual.txt"));
 
-        assertEquals("MCD", processWith9001("day5.txt", 3));
-        assertEquals("PQTJRSHWS", processWith9001("day5-actual.txt", 9));
+        assertEquals("MCD", processWith9001("day5.txt"));
+        assertEquals("PQTJRSHWS", processWith9001("day5-actual.txt"));
     }
 
-    private String processWith9001(String filename, int n) throws Exception {
-        List<Stack<Character>> stacks = new ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            stacks.add(new Stack<>());
-        }
-
-        // Fill the stacks
-        for (Character[] line : getStacks(filename, n)) {
-            for (int i = 0; i < n; i++) {
-                if (line[i] != null) {
-                    stacks.get(i).add(line[i]);
-                }
-            }
+    @Test
+    public void canMoveBlocksOfCrates() {
+        CrateStacks stacks = new CrateStacks(2);
+        for (char c : "ABCDE".toCharArray()) {
+            stacks.push(0, c);
         }
+        stacks.moveN(0, 1, 3, false);
+        assertEquals("BC", stacks.tops());
+        stacks.moveN(1, 0, 2, true);
+        assertEquals("CE", stacks.tops());
+        stacks.moveN(0, 1, 4, false);
+        assertEquals("A", stacks.tops());
+    }
 
-        // Execute the moves
-        List<List<Integer>> moves = getMoves(filename);
-        moveUsing9001(stacks, moves);
+    String processWith9001(String filename) throws IOException {
+        return process(filename, true);
+    }
 
-        // Read out the heads
-        StringBuilder out = new StringBuilder();
-        for (Stack stack : stacks) {
-            if (!stack.isEmpty()) {
-                out.append(stack.peek());
-            }
-        }
-        return out.toString();
+    String process(String filename) throws IOException {
+        return process(filename, false);
     }
 
-    private String process(String filename, int n) throws Exception {
-        List<Stack<Character>> stacks = new ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            stacks.add(new Stack<>());
+    // The two cranes only differ in whether a stack of crates keeps its order when it is lifted
+    private String process(String filename, boolean preserveOrder) throws IOException {
+        MappedInput input = MappedInput.open(filename);
+        CrateStacks stacks = readStacks(input);
+
+        // Execute the moves as we read them; nothing is kept per move
+        while (input.skipWhitespace()) {
+            int num = input.nextInt();
+            int from = input.nextInt() - 1;
+            int to = input.nextInt() - 1;
+            stacks.moveN(from, to, num, preserveOrder);
         }
 
-        // Fill the stacks
-        for (Character[] line : getStacks(filename, n)) {
-            for (int i = 0; i < n; i++) {
-                if (line[i] != null) {
-                    stacks.get(i).add(line[i]);
+        // Read out the heads
+        return stacks.tops();
+    }
+
+    // Reads the drawing of the stacks, leaving the input at the first move.
+    // The layers are drawn top down but need pushing bottom up, so we note where each layer line starts and ends
+    // and come back to them once the label row has told us how many stacks there are.
+    private CrateStacks readStacks(MappedInput input) {
+        long[] starts = new long[16];
+        long[] ends = new long[16];
+        int layers = 0;
+        while (true) {
+            long start = input.position();
+            boolean hasCrates = false;
+            while (!input.atEndOfLine()) {
+                if (input.next() == '[') {
+                    hasCrates = true;
                 }
             }
-        }
-
-        // Execute the moves
-        List<List<Integer>> moves = getMoves(filename);
-        moveUsing9000(stacks, moves);
+            long end = input.position();
+            input.skipLine();
+
+            if (!hasCrates) {
+                // The label row; the last label is the number of stacks
+                CrateStacks stacks = new CrateStacks(lastNumberIn(input, start, end));
+                for (int l = layers - 1; l >= 0; l--) {
+                    for (long p = starts[l] + 1; p < ends[l]; p += 4) {
+                        int crate = input.byteAt(p);
+                        if (crate != ' ') {
+                            stacks.push((int) ((p - starts[l]) / 4), (char) crate);
+                        }
+                    }
+                }
+                return stacks;
+            }
 
-        // Read out the heads
-        StringBuilder out = new StringBuilder();
-        for (Stack stack : stacks) {
-            if (!stack.isEmpty()) {
-                out.append(stack.peek());
+            if (layers == starts.length) {
+                starts = Arrays.copyOf(starts, layers * 2);
+                ends = Arrays.copyOf(ends, layers * 2);
             }
+            starts[layers] = start;
+            ends[layers] = end;
+            layers++;
         }
-        return out.toString();
     }
 
-    private void moveUsing9000(List<Stack<Character>> stacks, List<List<Integer>> moves) {  // TODO use a lambda for these
-        for (List<Integer> move : moves) {
-            int num = move.get(0);
-            int from = move.get(1) - 1;
-            int to = move.get(2) - 1;
-            for (int i = 0; i < num; i++) {
-                Character c = stacks.get(from).pop();
-                stacks.get(to).push(c);
+    private int lastNumberIn(MappedInput input, long from, long to) {
+        int last = 0;
+        int current = 0;
+        for (long p = from; p < to; p++) {
+            int c = input.byteAt(p);
+            if (c >= '0' && c <= '9') {
+                current = (current * 10) + (c - '0');
+            } else if (current > 0) {
+                last = current;
+                current = 0;
             }
         }
+        return current > 0 ? current : last;
     }
 
-    private void moveUsing9001(List<Stack<Character>> stacks, List<List<Integer>> moves) {
-        for (List<Integer> move : moves) {
-            int num = move.get(0);
-            int from = move.get(1) - 1;
-            int to = move.get(2) - 1;
+    // Stacks of crates held as primitive char arrays with the top of each stack at its end.
+    // A move of n crates is a single block copy (or a reversed copy for the 9000 which lifts one crate at a time);
+    // the arrays only grow, doubling when needed, so moves don't allocate.
+    class CrateStacks {
+        private final char[][] crates;
+        private final int[] heights;
 
-            List<Character> taken = new ArrayList<>();
-            for (int i = 0; i < num; i++) {
-                Character c = stacks.get(from).pop();
-                taken.add(c);
-            }
-            Collections.reverse(taken);
-            for (Character c : taken) {
-                stacks.get(to).push(c);
-            }
+        CrateStacks(int n) {
+            crates = new char[n][16];
+            heights = new int[n];
         }
-    }
 
-    private List<List<Integer>> getMoves(String filename) throws Exception {
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        List<String> lines = reader.lines().collect(Collectors.toList());
-        List<String> moveLines = lines.stream().filter(l -> l.contains("move")).collect(Collectors.toList());
+        void push(int stack, char crate) {
+            ensureCapacity(stack, heights[stack] + 1);
+            crates[stack][heights[stack]++] = crate;
+        }
 
-        List<List<Integer>> moves = new ArrayList<>();
-        for (String moveLine : moveLines) {
-            String numbers = moveLine.replace("move", "").replace("from ", "").replace("to ", "").trim();
-            moves.add(Arrays.stream(numbers.split(" ")).sequential().map(Integer::parseInt).collect(Collectors.toList()));
+        void moveN(int from, int to, int n, boolean preserveOrder) {
+            if (n > heights[from]) {
+                throw new IllegalArgumentException("Stack " + (from + 1) + " only has " + heights[from] + " crates");
+            }
+            ensureCapacity(to, heights[to] + n);
+            char[] source = crates[from];
+            char[] destination = crates[to];
+            int start = heights[from] - n;
+            if (preserveOrder) {
+                System.arraycopy(source, start, destination, heights[to], n);
+            } else {
+                int d = heights[to];
+                for (int i = heights[from] - 1; i >= start; i--) {
+                    destination[d++] = source[i];
+                }
+            }
+            heights[from] -= n;
+            heights[to] += n;
         }
-        return moves;
-    }
 
-    private List<Character[]> getStacks(String filename, int n) throws FileNotFoundException {
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        List<String> lines = reader.lines().collect(Collectors.toList());
-
-        List<String> stacks = lines.stream().filter(l -> !l.contains("move") && l.length() > 0).collect(Collectors.toList());
-        Collections.reverse(stacks);
-        List<String> stackLines = stacks.subList(1, stacks.size()); // Strip header
-
-        // Parse stack lines
-        List<Character[]> layers = new ArrayList<>();
-        for (String stackLine : stackLines) {
-            Character[] layer = new Character[n];
-            int i = 0;
-            for (int d = 1; d < stackLine.length(); d += 4) {
-                char c = stackLine.charAt(d);
-                if (c != ' ') {
-                    layer[i] = c;
+        String tops() {
+            StringBuilder out = new StringBuilder();
+            for (int i = 0; i < crates.length; i++) {
+                if (heights[i] > 0) {
+                    out.append(crates[i][heights[i] - 1]);
                 }
-                i++;
             }
-            layers.add(layer);
+            return out.toString();
         }
 
-        return layers;
+        private void ensureCapacity(int stack, int capacity) {
+            if (capacity > crates[stack].length) {
+                crates[stack] = Arrays.copyOf(crates[stack], Math.max(capacity, crates[stack].length * 2));
+            }
+        }
     }
 
 }
@@ -1,12 +1,20 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class Day6 {
 
@@ -17,28 +25,125 @@ public class Day6 {
         assertEquals(6, getStartOfMessageOffset("nppdvjthqldpwncqszvftbrmjlhg", 4));
         assertEquals(10, getStartOfMessageOffset("nznrnfrfntjfmvfwmzdfjlvtqnbhcprsg", 4));
         assertEquals(11, getStartOfMessageOffset("zcfzfwzzqfrljwzlrfnpqdbhtmscgvjw", 4));
-        assertEquals(1093, getStartOfMessageOffset(fromFile("day6-actual.txt"), 4));
+        assertEquals(1093, getStartOfMessageOffset(Path.of("day6-actual.txt"), 4));
 
         assertEquals(19, getStartOfMessageOffset("mjqjpqmgbljsphdztnvjfqwrcgsmlb", 14));
-        assertEquals(3534, getStartOfMessageOffset(fromFile("day6-actual.txt"), 14));
+        assertEquals(3534, getStartOfMessageOffset(Path.of("day6-actual.txt"), 14));
     }
 
-    private Integer getStartOfMessageOffset(String line, int n) {
-        for (int i = 0; i < line.length() - n; i++) {
-            Set<Character> seen = new HashSet<>();
-            for (int j = 0; j < n; j++) {
-                seen.add(line.charAt(i + j));
-            }
-            if (seen.size() == n) {
-                return i + n;
+    @Test
+    public void reportsEveryMarker() throws Exception {
+        assertEquals(List.of(3L, 4L, 5L, 6L), allMarkers("abcabd", 3));
+        assertEquals(List.of(3L), allMarkers("aab", 2));
+        assertEquals(List.of(), allMarkers("aaaa", 2));
+        assertEquals(List.of(1L, 2L, 3L), allMarkers("aaa", 1));
+        assertNull(getStartOfMessageOffset("abab", 3));
+    }
+
+    Long getStartOfMessageOffset(String line, int n) throws IOException {
+        return firstMarker(Channels.newChannel(new ByteArrayInputStream(line.getBytes(StandardCharsets.US_ASCII))), n);
+    }
+
+    private Long getStartOfMessageOffset(Path signal, int n) throws IOException {
+        try (FileChannel channel = FileChannel.open(signal)) {
+            return firstMarker(channel, n);
+        }
+    }
+
+    private List<Long> allMarkers(String line, int n) throws IOException {
+        List<Long> markers = new ArrayList<>();
+        scan(new ByteArrayInputStream(line.getBytes(StandardCharsets.US_ASCII)), n, markers::add);
+        return markers;
+    }
+
+    private Long firstMarker(ReadableByteChannel channel, int n) throws IOException {
+        // Stop reading as soon as the first marker turns up
+        MarkerDetector detector = new MarkerDetector(n, null);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (detector.push(buffer.get())) {
+                    return detector.offset();
+                }
             }
+            buffer.clear();
         }
         return null;
     }
 
-    private String fromFile(String filename) throws IOException {
-        BufferedReader lines = new BufferedReader(new FileReader(filename));
-        return lines.readLine();
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    void scan(InputStream signal, int n, LongConsumer onMarker) throws IOException {
+        scan(Channels.newChannel(signal), n, onMarker);
+    }
+
+    // Pushes the whole signal through a detector a buffer at a time, so the signal never has to fit in memory
+    void scan(ReadableByteChannel signal, int n, LongConsumer onMarker) throws IOException {
+        MarkerDetector detector = new MarkerDetector(n, onMarker);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (signal.read(buffer) != -1) {
+            buffer.flip();
+            detector.push(buffer);
+            buffer.clear();
+        }
+    }
+
+    // Slides a window of n bytes over the signal keeping a count of each byte value in the window,
+    // and a count of how many values appear more than once. The window is a marker whenever that is zero.
+    class MarkerDetector {
+        private final int n;
+        private final LongConsumer onMarker;
+        private final int[] counts = new int[256];
+        private final byte[] window;
+        private long offset = 0;
+        private int duplicates = 0;
+
+        MarkerDetector(int n, LongConsumer onMarker) {
+            if (n < 1) {
+                throw new IllegalArgumentException("Window must be at least 1");
+            }
+            this.n = n;
+            this.onMarker = onMarker;
+            this.window = new byte[n];
+        }
+
+        void push(ByteBuffer bytes) {
+            while (bytes.hasRemaining()) {
+                push(bytes.get());
+            }
+        }
+
+        // True if the window ending with this byte is a marker; line endings aren't part of the signal
+        boolean push(byte b) {
+            if (b == '\n' || b == '\r') {
+                return false;
+            }
+
+            int slot = (int) (offset % n);
+            if (offset >= n) {
+                int leaving = window[slot] & 0xff;
+                if (--counts[leaving] == 1) {
+                    duplicates--;
+                }
+            }
+            window[slot] = b;
+            if (++counts[b & 0xff] == 2) {
+                duplicates++;
+            }
+            offset++;
+
+            boolean isMarker = offset >= n && duplicates == 0;
+            if (isMarker && onMarker != null) {
+                onMarker.accept(offset);
+            }
+            return isMarker;
+        }
+
+        // Number of signal bytes read so far; when a marker is found this is the marker's offset
+        long offset() {
+            return offset;
+        }
     }
 
 }
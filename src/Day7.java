@@ -9,6 +9,9 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class Day7 {
 
+    private static final long TOTAL_SPACE = 70000000;
+    private static final long SPACE_NEEDED = 30000000;
+
     @Test
     public void day7() throws Exception {
         assertEquals(95437, getSumOfFoldersSizesUnder("day7.txt"));
@@ -22,73 +25,293 @@ public class Day7 {
 
     }
 
-    private long dirToDelete(String fileName) throws IOException {
-        long totalSpace = 70000000;
-        long spaceNeeded = 30000000;
+    @Test
+    public void canLookUpDirectorySizes() throws Exception {
+        FileSystem fileSystem = parse("day7.txt");
+        assertEquals(48381165, fileSystem.sizeOf("/"));
+        assertEquals(94853, fileSystem.sizeOf("/a"));
+        assertEquals(584, fileSystem.sizeOf("/a/e"));
+        assertEquals(24933642, fileSystem.sizeOf("/d/"));
+        assertEquals(-1, fileSystem.sizeOf("/x"));
 
-        Map<String, Long> dirSizes = getDirSizes(fileName);
-        long spaceFree = totalSpace - dirSizes.get("/,");
-        long spaceToFree = spaceNeeded - spaceFree;
+        assertEquals(584, fileSystem.smallestAtLeast(1));
+        assertEquals(94853, fileSystem.smallestAtLeast(585));
+        assertEquals(-1, fileSystem.smallestAtLeast(48381166));
+    }
 
-        // Get the sizes of all folders;
-        // Filter to all those which are larger than the required space.
-        // Output the smallest of these.
+    @Test
+    public void liveTotalsMatchAFullParse() throws Exception {
+        for (String fileName : new String[]{"day7.txt", "day7-actual.txt"}) {
+            LiveFileSystem live = new LiveFileSystem(100000);
+            FileSystem batch = new FileSystem();
+            BufferedReader reader = new BufferedReader(new FileReader(fileName));
+            int lines = 0;
+            while (reader.ready()) {
+                String line = reader.readLine();
+                live.accept(line);
+                batch.accept(line);
+                lines++;
 
-        // Sort map by values ascending
-        List<Long> sizes = new ArrayList<>(dirSizes.values());  // TODO need to know how to this on Map Entries
-        Collections.sort(sizes);
-        for (long size: sizes) {
-            if (size >= spaceToFree) {
-                return size;
+                if (lines % 25 == 0 || !reader.ready()) {
+                    batch.rollUp();
+                    assertEquals(batch.sumOfSizesAtMost(100000), live.sumOfSizesAtMost(100000));
+                    assertEquals(batch.sizeOf("/"), live.sizeOf("/"));
+                    assertEquals(dirToDelete(batch), dirToDelete(live));
+                }
             }
         }
-        return -1L;
     }
 
-    private long getSumOfFoldersSizesUnder(String fileName) throws IOException {
-        Map<String, Long> dirSizes = getDirSizes(fileName);
-        // Filter for all folder less than 100000 and sum there sizes.
-        long sum = 0;
-        for (Long dirSize : dirSizes.values()) {
-            if (dirSize <= 100000) {
-                sum += dirSize;
+    @Test
+    public void relistingADirectoryCountsItsFilesOnce() {
+        String[] once = {"$ cd /", "$ ls", "dir a", "100 b.txt", "$ cd a", "$ ls", "200 c.txt", "300 d.txt"};
+        String[] twice = {"$ cd /", "$ ls", "dir a", "100 b.txt", "$ cd a", "$ ls", "200 c.txt", "300 d.txt",
+                "$ cd ..", "$ ls", "dir a", "100 b.txt", "$ cd a", "$ ls", "300 d.txt", "200 c.txt"};
+        for (String[] transcript : new String[][]{once, twice}) {
+            LiveFileSystem live = new LiveFileSystem(100000);
+            FileSystem batch = new FileSystem();
+            for (String line : transcript) {
+                live.accept(line);
+                batch.accept(line);
+            }
+            batch.rollUp();
+            for (FileSystem fileSystem : new FileSystem[]{live, batch}) {
+                assertEquals(600, fileSystem.sizeOf("/"));
+                assertEquals(500, fileSystem.sizeOf("/a"));
+                assertEquals(1100, fileSystem.sumOfSizesAtMost(100000));
+                assertEquals(500, fileSystem.smallestAtLeast(1));
             }
         }
-        return sum;
+
+        // A file which has grown since the last listing only adds the difference
+        LiveFileSystem live = new LiveFileSystem(100000);
+        for (String line : new String[]{"$ cd /", "$ ls", "100 b.txt", "$ ls", "150 b.txt"}) {
+            live.accept(line);
+        }
+        assertEquals(150, live.sizeOf("/"));
+        assertEquals(150, live.sumOfSizesAtMost(100000));
     }
 
-    private Map<String, Long> getDirSizes(String fileName) throws IOException {
-        Map<String, Long> dirSizes = new HashMap<>();
+    long dirToDelete(String fileName) throws IOException {
+        return dirToDelete(parse(fileName));
+    }
+
+    private long dirToDelete(FileSystem fileSystem) {
+        long spaceFree = TOTAL_SPACE - fileSystem.sizeOf("/");
+        long spaceToFree = SPACE_NEEDED - spaceFree;
 
+        // The smallest folder which is at least the required space
+        return fileSystem.smallestAtLeast(spaceToFree);
+    }
+
+    long getSumOfFoldersSizesUnder(String fileName) throws IOException {
+        // Filter for all folder less than 100000 and sum there sizes.
+        return parse(fileName).sumOfSizesAtMost(100000);
+    }
+
+    private FileSystem parse(String fileName) throws IOException {
+        FileSystem fileSystem = new FileSystem();
         BufferedReader reader = new BufferedReader(new FileReader(fileName));
-        Stack<String> currentFolder = new Stack<>();
         while (reader.ready()) {
-            String line = reader.readLine();
-            if (line.equals("$ cd ..")) {
-                currentFolder.pop();
+            fileSystem.accept(reader.readLine());
+        }
+        fileSystem.rollUp();
+        return fileSystem;
+    }
+
+    // A directory tree built from the terminal output.
+    // Files are only counted into their own directory as they are listed; the totals are rolled up once afterwards.
+    class FileSystem {
+        private final Dir root = new Dir("/", null);
+        private Dir current = null;
+        private long[] sortedSizes = new long[0];
+        private int count = 0;
+
+        void accept(String line) {
+            if (line.equals("$ cd /")) {
+                current = root;
+
+            } else if (line.equals("$ cd ..")) {
+                current = current.parent;
 
             } else if (line.startsWith("$ cd ")) {
-                String folder = line.split(" ")[2];
-                currentFolder.push(folder);
-
-            } else {
-                if (!line.startsWith("dir ") && !line.equals("$ ls")) {
-                    String[] fileAttributes = line.split(" ");
-                    long fileSize = Long.parseLong(fileAttributes[0]);
-
-                    // Add this file size to all in scope folders
-                    Iterator<String> iterator = currentFolder.iterator();
-                    StringBuilder folderName = new StringBuilder();
-                    while(iterator.hasNext()) {
-                        folderName.append(iterator.next() + ",");
-                        String key = folderName.toString();
-                        long count = dirSizes.getOrDefault(key, 0L);
-                        dirSizes.put(key, count + fileSize);
+                current = childOf(current, line.substring(5));
+
+            } else if (line.startsWith("dir ")) {
+                childOf(current, line.substring(4));
+
+            } else if (!line.equals("$ ls")) {
+                int space = line.indexOf(' ');
+                long size = Long.parseLong(line, 0, space, 10);
+                // A directory can be listed more than once; only a new file or a changed size moves the totals
+                Long before = current.files.put(line.substring(space + 1), size);
+                long change = before == null ? size : size - before;
+                if (change != 0) {
+                    addFile(current, change);
+                }
+            }
+        }
+
+        Dir childOf(Dir dir, String name) {
+            Dir child = dir.children.get(name);
+            if (child == null) {
+                child = dir.newChild(name);
+                onNewDir(child);
+            }
+            return child;
+        }
+
+        void onNewDir(Dir dir) {
+        }
+
+        void addFile(Dir dir, long size) {
+            dir.ownSize += size;
+        }
+
+        // Post order walk without recursion so deep trees can't blow the stack; children are done before their parent
+        void rollUp() {
+            List<Dir> order = new ArrayList<>();
+            Deque<Dir> toVisit = new ArrayDeque<>();
+            toVisit.push(root);
+            while (!toVisit.isEmpty()) {
+                Dir dir = toVisit.pop();
+                order.add(dir);
+                for (Dir child : dir.children.values()) {
+                    toVisit.push(child);
+                }
+            }
+
+            sortedSizes = new long[order.size()];
+            for (int i = order.size() - 1; i >= 0; i--) {
+                Dir dir = order.get(i);
+                dir.totalSize = dir.ownSize;
+                for (Dir child : dir.children.values()) {
+                    dir.totalSize += child.totalSize;
+                }
+                sortedSizes[i] = dir.totalSize;
+            }
+            Arrays.sort(sortedSizes);
+            count = order.size();
+        }
+
+        // Total size of a directory given as a slash separated path; -1 if there is no such directory
+        long sizeOf(String path) {
+            Dir dir = root;
+            for (String name : path.split("/")) {
+                if (!name.isEmpty()) {
+                    dir = dir.children.get(name);
+                    if (dir == null) {
+                        return -1L;
                     }
                 }
             }
+            return dir.totalSize;
+        }
+
+        // Binary search of the sorted sizes; -1 if nothing is big enough
+        long smallestAtLeast(long size) {
+            int from = 0;
+            int to = count;
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (sortedSizes[mid] < size) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            return from < count ? sortedSizes[from] : -1L;
+        }
+
+        long sumOfSizesAtMost(long limit) {
+            long sum = 0;
+            for (int i = 0; i < count && sortedSizes[i] <= limit; i++) {
+                sum += sortedSizes[i];
+            }
+            return sum;
+        }
+    }
+
+    // A filesystem which keeps its totals up to date as each line of a growing transcript arrives.
+    // A file line updates its directory and every ancestor, O(depth) plus the sorted index update for each;
+    // the queries then answer without a rescan: the sum of small directories in O(1), the smallest big enough one in O(log n).
+    class LiveFileSystem extends FileSystem {
+        private final long smallLimit;
+        private long smallSum = 0;
+        // Directory totals to how many directories currently have that total
+        private final TreeMap<Long, Integer> sizes = new TreeMap<>();
+
+        LiveFileSystem(long smallLimit) {
+            this.smallLimit = smallLimit;
+            sizes.put(0L, 1);   // The root
+        }
+
+        @Override
+        void onNewDir(Dir dir) {
+            sizes.merge(0L, 1, Integer::sum);
+        }
+
+        @Override
+        void addFile(Dir dir, long size) {
+            dir.ownSize += size;
+            for (Dir d = dir; d != null; d = d.parent) {
+                long before = d.totalSize;
+                long after = before + size;
+                d.totalSize = after;
+
+                if (before <= smallLimit) {
+                    smallSum -= before;
+                }
+                if (after <= smallLimit) {
+                    smallSum += after;
+                }
+                if (sizes.merge(before, -1, Integer::sum) == 0) {
+                    sizes.remove(before);
+                }
+                sizes.merge(after, 1, Integer::sum);
+            }
+        }
+
+        @Override
+        void rollUp() {
+            // Always up to date
+        }
+
+        @Override
+        long smallestAtLeast(long size) {
+            Long smallest = sizes.ceilingKey(size);
+            return smallest != null ? smallest : -1L;
+        }
+
+        @Override
+        long sumOfSizesAtMost(long limit) {
+            if (limit != smallLimit) {
+                throw new IllegalArgumentException("Only tracking directories of at most " + smallLimit);
+            }
+            return smallSum;
+        }
+    }
+
+    class Dir {
+        final String name;
+        final Dir parent;
+        final Map<String, Dir> children = new HashMap<>();
+        // File names to sizes, so listing the directory again doesn't count them twice
+        final Map<String, Long> files = new HashMap<>();
+        long ownSize;
+        long totalSize;
+
+        Dir(String name, Dir parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        // Names repeat a lot across a tree so share one copy of each
+        Dir newChild(String name) {
+            Dir child = new Dir(name.intern(), this);
+            children.put(child.name, child);
+            return child;
         }
-        return dirSizes;
     }
 
 }
@@ -1,12 +1,10 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -15,143 +13,239 @@ public class Day8 {
     @Test
     public void day8() throws Exception {
         // Read the input into a array
-        assertEquals(21, findVisible(loadGrid("day8.txt", 5)));
-        assertEquals(1787, findVisible(loadGrid("day8-actual.txt", 99)));
+        assertEquals(21, findVisible(loadGrid("day8.txt")));
+        assertEquals(1787, findVisible(loadGrid("day8-actual.txt")));
     }
 
     @Test
     public void day8part2() throws Exception {
-        assertEquals(8, findBestScenicScore(loadGrid("day8.txt", 5)));
-        assertEquals(440640, findBestScenicScore(loadGrid("day8-actual.txt", 99)));
+        assertEquals(8, findBestScenicScore(loadGrid("day8.txt")));
+        assertEquals(440640, findBestScenicScore(loadGrid("day8-actual.txt")));
     }
 
-    private int findBestScenicScore(int[][] grid) {
-        int best = 0;
-        int n = grid.length;
-        for (int y = 0; y < n; y++) {
-            for (int x = 0; x < n; x++) {
-                // For each point in the grid get the sight lines from that point and score them
-                List<List<Integer>> sightLines = getSightLinesFrom(grid, y, x);
-                int sum = 1;
-                for (List<Integer> sightLine : sightLines) {
-                    int i = scoreSightLine(grid[y][x], sightLine.subList(1, sightLine.size()));
-                    sum = sum * i;
-                }
-                if (sum > best) {
-                    best = sum;
+    @Test
+    public void nonSquareGrids() {
+        Forest wide = forestOf(
+                "303731",
+                "255124",
+                "653322");
+        // Only the middle row has interior trees; the 5s are visible from above and the left
+        assertEquals(14 + 2, findVisible(wide));
+        // The 5 at (1, 2) sees 1 up, 1 left, 3 right and 1 down
+        assertEquals(3, findBestScenicScore(wide));
+
+        Forest tall = forestOf("1", "2", "3");
+        assertEquals(3, findVisible(tall));
+        assertEquals(0, findBestScenicScore(tall));
+    }
+
+    @Test
+    public void parallelSweepsMatchBruteForce() {
+        Random random = new Random(8);
+        for (int attempt = 0; attempt < 20; attempt++) {
+            int width = 1 + random.nextInt(70);
+            int height = 1 + random.nextInt(70);
+            byte[] rows = new byte[width * height];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = (byte) random.nextInt(10);
+            }
+            Forest forest = new Forest(rows, width, height);
+
+            int visible = 0;
+            long best = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    assertEquals(forest.rows[(y * width) + x], forest.columns[(x * height) + y]);
+                    int[] distances = new int[4];
+                    boolean seen = false;
+                    int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+                    for (int d = 0; d < 4; d++) {
+                        int cx = x + directions[d][0];
+                        int cy = y + directions[d][1];
+                        boolean blocked = false;
+                        while (cx >= 0 && cx < width && cy >= 0 && cy < height) {
+                            distances[d]++;
+                            if (rows[(cy * width) + cx] >= rows[(y * width) + x]) {
+                                blocked = true;
+                                break;
+                            }
+                            cx += directions[d][0];
+                            cy += directions[d][1];
+                        }
+                        seen |= !blocked;
+                    }
+                    if (seen) {
+                        visible++;
+                    }
+                    best = Math.max(best, (long) distances[0] * distances[1] * distances[2] * distances[3]);
                 }
             }
+            assertEquals(visible, findVisible(forest));
+            assertEquals(best, findBestScenicScore(forest));
         }
-        return best;
     }
 
-    private List<List<Integer>> getSightLinesFrom(int[][] grid, int y, int x) {
-        int n = grid.length;
-        List<List<Integer>> sightLines = new ArrayList<>();
-        for (int d = 0; d < 4; d++) {   // Direction
-            int ya = y;
-            int xa = x;
-            List<Integer> sightLine = new ArrayList<>();
-            while (ya >= 0 && ya < n && xa >= 0 && xa < n) {
-                sightLine.add(grid[ya][xa]);
-                if (d == 0) {
-                    xa ++;
-                } else if (d == 1) {
-                    ya ++;
-                } else if (d == 2) {
-                    xa --;
-                } else {
-                    ya --;
+    // The four viewing distances for every tree come from monotonic stacks; each sweep along a line keeps the indexes
+    // of the trees still able to block the view, tallest at the bottom. A tree's view ends at the first tree at least
+    // as tall as it, which is whatever is left on the stack once the shorter trees have been popped.
+    // Rows are swept in parallel, then columns over the transposed copy, on the common fork join pool.
+    long findBestScenicScore(Forest forest) {
+        int width = forest.width;
+        int height = forest.height;
+
+        // Left and right distances multiplied together, per tree; filled in by the row sweeps
+        int[] across = new int[height * width];
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int[] stack = new int[width];
+            int[] left = new int[width];
+            int[] right = new int[width];
+            viewingDistances(forest.rows, y * width, width, stack, left, false);
+            viewingDistances(forest.rows, y * width, width, stack, right, true);
+            for (int x = 0; x < width; x++) {
+                across[(y * width) + x] = left[x] * right[x];
+            }
+        });
+
+        return IntStream.range(0, width).parallel().mapToLong(x -> {
+            int[] stack = new int[height];
+            int[] up = new int[height];
+            int[] down = new int[height];
+            viewingDistances(forest.columns, x * height, height, stack, up, false);
+            viewingDistances(forest.columns, x * height, height, stack, down, true);
+            long best = 0;
+            for (int y = 0; y < height; y++) {
+                long score = (long) across[(y * width) + x] * up[y] * down[y];
+                if (score > best) {
+                    best = score;
                 }
             }
-            sightLines.add(sightLine);
-        }
-        return sightLines;
+            return best;
+        }).max().orElse(0);
     }
 
-    private int scoreSightLine(int h, List<Integer> sightLine) {
-        int score = 0;
-        for (Integer tree: sightLine) {
-            score++;
-            if (tree >= h) {
-                return score;
+    // Fills distances with how far each tree on the line can see towards its start (or towards its end if reversed)
+    private void viewingDistances(byte[] heights, int offset, int length, int[] stack, int[] distances, boolean reversed) {
+        int top = 0;
+        for (int step = 0; step < length; step++) {
+            int i = reversed ? length - 1 - step : step;
+            byte h = heights[offset + i];
+            while (top > 0 && heights[offset + stack[top - 1]] < h) {
+                top--;
             }
+            // With nothing left to block the view we can see all the way to the edge
+            distances[i] = top == 0 ? step : Math.abs(i - stack[top - 1]);
+            stack[top++] = i;
         }
-        return score;
     }
 
-    private int findVisible(int[][] grid) {
-        int n = grid.length;
-
-        // We are probably going to want a registry of visible trees
-        Set<String> visible = new HashSet<>();
-
-        // Scan the grid from each direction
-
-        // Left to right
-        for (int y = 1; y < (n - 1); y++) {
-            int h = grid[y][0];
-            for (int x = 1; x < (n - 1); x++) {
-                int t = grid[y][x];
-                if (t > h) {
-                    markAsVisible(visible, y, x);
-                    h = t;
+    // A tree is visible from a direction if it is taller than everything before it; edge trees always are.
+    // Each row and each column gets its own BitSet so the sweeps can run in parallel without sharing any words.
+    int findVisible(Forest forest) {
+        int width = forest.width;
+        int height = forest.height;
+
+        BitSet[] acrossRows = new BitSet[height];
+        IntStream.range(0, height).parallel()
+                .forEach(y -> acrossRows[y] = visibleAlong(forest.rows, y * width, width));
+        BitSet[] downColumns = new BitSet[width];
+        IntStream.range(0, width).parallel()
+                .forEach(x -> downColumns[x] = visibleAlong(forest.columns, x * height, height));
+
+        // Anything not seen along its row may still be seen along its column
+        return IntStream.range(0, height).parallel().map(y -> {
+            BitSet row = acrossRows[y];
+            int count = row.cardinality();
+            for (int x = row.nextClearBit(0); x < width; x = row.nextClearBit(x + 1)) {
+                if (downColumns[x].get(y)) {
+                    count++;
                 }
             }
-        }
+            return count;
+        }).sum();
+    }
 
-        // Top to bottom
-        for (int x = 1; x < (n - 1); x++) {
-            int h = grid[0][x];
-            for (int y = 1; y < (n - 1); y++) {
-                int t = grid[y][x];
-                if (t > h) {
-                    markAsVisible(visible, y, x);
-                    h = t;
-                }
+    // Trees on the line visible from either end; a 9 hides everything behind it so we can stop there
+    private BitSet visibleAlong(byte[] heights, int offset, int length) {
+        BitSet visible = new BitSet(length);
+        int h = -1;
+        for (int i = 0; i < length && h < 9; i++) {
+            if (heights[offset + i] > h) {
+                visible.set(i);
+                h = heights[offset + i];
             }
         }
-
-        // Right to left
-        for (int y = 1; y < (n - 1); y++) {
-            int h = grid[y][n - 1];
-            for (int x = n - 2; x > 0; x--) {
-                int t = grid[y][x];
-                if (t > h) {
-                    markAsVisible(visible, y, x);
-                    h = t;
-                }
+        h = -1;
+        for (int i = length - 1; i >= 0 && h < 9; i--) {
+            if (heights[offset + i] > h) {
+                visible.set(i);
+                h = heights[offset + i];
             }
         }
+        return visible;
+    }
 
-        // Bottom to top
-        for (int x = 1; x < (n - 1); x++) {
-            int h = grid[n - 1][x];
-            for (int y = n - 2; y > 0; y--) {
-                int t = grid[y][x];
-                if (t > h) {
-                    markAsVisible(visible, y, x);
-                    h = t;
-                }
+    // Grids need not be square; the width is the length of the first line
+    Forest loadGrid(String fileName) throws IOException {
+        MappedInput input = MappedInput.open(fileName);
+        byte[] heights = new byte[(int) Math.min(Integer.MAX_VALUE - 8, input.size())];
+        int size = 0;
+        int width = -1;
+        while (input.hasRemaining()) {
+            int c = input.next();
+            if (c >= '0' && c <= '9') {
+                heights[size++] = (byte) (c - '0');
+            } else if (c == '\n' && width < 0) {
+                width = size;
             }
         }
-        return visible.size() + (2 * n) + (2 * (n - 2));
+        if (width < 0) {
+            width = size;
+        }
+        return new Forest(Arrays.copyOf(heights, size), width, size / width);
     }
 
-    private boolean markAsVisible(Set<String> visible, int y, int x) {
-        return visible.add(y + "," + x);
+    Forest forestOf(String... lines) {
+        int width = lines[0].length();
+        byte[] rows = new byte[width * lines.length];
+        for (int y = 0; y < lines.length; y++) {
+            for (int x = 0; x < width; x++) {
+                rows[(y * width) + x] = (byte) (lines[y].charAt(x) - '0');
+            }
+        }
+        return new Forest(rows, width, lines.length);
     }
 
-    private int[][] loadGrid(String fileName, int n) throws IOException {
-        int[][] grid = new int[n][n];
-        BufferedReader input = new BufferedReader(new FileReader(fileName));
-        for (int y = 0; y < n; y++) {
-            String line = input.readLine();
-            for (int x = 0; x < n; x++) {
-                grid[y][x] = Integer.parseInt(Character.toString(line.charAt(x)));
+    // Tree heights one byte each, held twice: row major for the sweeps across and transposed for the sweeps down,
+    // so both kinds of sweep walk contiguous memory.
+    class Forest {
+        final int width;
+        final int height;
+        // Row y is rows[y * width] to rows[(y + 1) * width - 1]
+        final byte[] rows;
+        // Column x is columns[x * height] to columns[(x + 1) * height - 1]
+        final byte[] columns;
+
+        Forest(byte[] rows, int width, int height) {
+            if (rows.length != width * height) {
+                throw new IllegalArgumentException("Rows are not all " + width + " trees wide");
             }
+            this.width = width;
+            this.height = height;
+            this.rows = rows;
+            this.columns = new byte[rows.length];
+
+            // Transpose a band of columns at a time so the reads stay within a few cache lines of each row
+            int band = 64;
+            IntStream.range(0, (width + band - 1) / band).parallel().forEach(b -> {
+                int from = b * band;
+                int to = Math.min(width, from + band);
+                for (int y = 0; y < height; y++) {
+                    for (int x = from; x < to; x++) {
+                        columns[(x * height) + y] = rows[(y * width) + x];
+                    }
+                }
+            });
         }
-        return grid;
     }
 
 }
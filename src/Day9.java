@@ -1,14 +1,12 @@
 import org.junit.jupiter.api.Test;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Day9 {
 
@@ -25,146 +23,273 @@ public class Day9 {
 
     @Test
     public void shouldFollow() {
-        assertEquals(3, follow(4, 2, 2, 2)[0]);
-        assertEquals(2, follow(4, 2, 2, 2)[1]);
+        assertEquals(3, tailAfter(4, 2, 2, 2)[0]);
+        assertEquals(2, tailAfter(4, 2, 2, 2)[1]);
 
-        assertEquals(2, follow(2, 2, 2, 4)[0]);
-        assertEquals(3, follow(2, 2, 2, 4)[1]);
+        assertEquals(2, tailAfter(2, 2, 2, 4)[0]);
+        assertEquals(3, tailAfter(2, 2, 2, 4)[1]);
 
-        assertEquals(3, follow(3, 4, 2, 2)[0]);
-        assertEquals(3, follow(3, 4, 2, 2)[1]);
+        assertEquals(3, tailAfter(3, 4, 2, 2)[0]);
+        assertEquals(3, tailAfter(3, 4, 2, 2)[1]);
 
-        assertEquals(3, follow(4, 3, 2, 2)[0]);
-        assertEquals(3, follow(4, 3, 2, 2)[1]);
+        assertEquals(3, tailAfter(4, 3, 2, 2)[0]);
+        assertEquals(3, tailAfter(4, 3, 2, 2)[1]);
 
-        assertEquals(-3, follow(-4, 2, -2, 2)[0]);
-        assertEquals(2, follow(-4, 2, -2, 2)[1]);
+        assertEquals(-3, tailAfter(-4, 2, -2, 2)[0]);
+        assertEquals(2, tailAfter(-4, 2, -2, 2)[1]);
 
-        assertEquals(2, follow(2, -2, 2, -4)[0]);
-        assertEquals(-3, follow(2, -2, 2, -4)[1]);
+        assertEquals(2, tailAfter(2, -2, 2, -4)[0]);
+        assertEquals(-3, tailAfter(2, -2, 2, -4)[1]);
 
-        assertEquals(2, follow(2, -1, 1, 1)[0]);
-        assertEquals(0, follow(2, -1, 1, 1)[1]);
+        assertEquals(2, tailAfter(2, -1, 1, 1)[0]);
+        assertEquals(0, tailAfter(2, -1, 1, 1)[1]);
 
-        assertEquals(0, follow(-1, 1, 1, 0)[0]);
-        assertEquals(1, follow(-1, 1, 1, 0)[1]);
+        assertEquals(0, tailAfter(-1, 1, 1, 0)[0]);
+        assertEquals(1, tailAfter(-1, 1, 1, 0)[1]);
 
-        // TODO dx = 2, dy =2 is possible
+        assertEquals(3, tailAfter(4, 4, 2, 2)[0]);
+        assertEquals(3, tailAfter(4, 4, 2, 2)[1]);
+
+        assertEquals(2, tailAfter(3, 3, 2, 2)[0]);
+        assertEquals(2, tailAfter(3, 3, 2, 2)[1]);
+
+        assertTrue(follow(new int[]{4, 2, 2, 2}, 1));
+        assertFalse(follow(new int[]{3, 3, 2, 2}, 1));
+        assertFalse(follow(new int[]{2, 2, 2, 2}, 1));
     }
 
-    private int countTailVisits(List<Character> moves, int n) {
-        // Step through each move, moving the head
-        // then letting the tail react.
-        // We'll need to track the positions of the head and tail.
+    // Where the tail ends up after following a head at hx, hy
+    private int[] tailAfter(int hx, int hy, int tx, int ty) {
+        int[] knots = {hx, hy, tx, ty};
+        follow(knots, 1);
+        return new int[]{knots[2], knots[3]};
+    }
 
-        // Setup our knows
-        int[][] knots = new int[n][2];
-        for (int i = 0; i < n; i++) {
-            knots[i] = new int[]{1, 1};
+    @Test
+    public void runLengthMovesMatchSingleSteps() {
+        Random random = new Random(9);
+        byte[] directions = {'R', 'L', 'U', 'D'};
+        Moves runs = new Moves();
+        Moves singles = new Moves();
+        for (int m = 0; m < 2000; m++) {
+            byte direction = directions[random.nextInt(4)];
+            int steps = 1 + random.nextInt(m % 10 == 0 ? 60 : 6);
+            runs.add(direction, steps);
+            for (int s = 0; s < steps; s++) {
+                singles.add(direction, 1);
+            }
         }
-        // And we want to record all the locations the tail visited; potentially unbounded coordinates so use a set
-        Set<String> tailVisits = new HashSet<>();
-
-        for (char move : moves) {
-            // Move the head know
-            int hx = knots[0][0];
-            int hy = knots[0][1];
-            if (move == 'R') {
-                hx++;
-            } else if (move == 'L') {
-                hx--;
-            } else if (move == 'U') {
-                hy++;
-            } else if (move == 'D') {
-                hy--;
+        for (int n = 1; n <= 12; n++) {
+            assertEquals(countTailVisits(singles, n), countTailVisits(runs, n));
+        }
+
+        // Once the rope is stretched out straight the tail covers every cell up to 9 behind the head
+        Moves straight = new Moves();
+        straight.add((byte) 'U', 100);
+        assertEquals(92, countTailVisits(straight, 10));
+    }
+
+    @Test
+    public void batchCountsEveryRopeLength() throws Exception {
+        for (String filename : new String[]{"day9.txt", "day9-part2.txt", "day9-actual.txt"}) {
+            Moves moves = loadMovesFile(filename);
+            long[] visitsByLength = visitsByLength(moves, 12);
+            for (int n = 1; n <= 12; n++) {
+                assertEquals(countTailVisits(moves, n), visitsByLength[n]);
             }
-            knots[0][0] = hx;
-            knots[0][1] = hy;
-
-            // Tail knots react in turn
-            for (int i = 1; i < n; i++) {
-                hx = knots[i - 1][0];
-                hy = knots[i - 1][1];
-                int tx = knots[i][0];
-                int ty = knots[i][1];
-                // How far away is the tail
-                int[] tailLocation = follow(hx, hy, tx, ty);
-                knots[i] = tailLocation;
+        }
+        long[] visitsByLength = visitsByLength(loadMovesFile("day9-actual.txt"), 10);
+        assertEquals(5779, visitsByLength[2]);
+        assertEquals(2331, visitsByLength[10]);
+    }
+
+    int countTailVisits(Moves moves, int n) {
+        // Potentially unbounded coordinates, so the tail's cells go into a set of packed x/y
+        LongSet[] visits = new LongSet[n];
+        visits[n - 1] = new LongSet();
+        simulate(moves, n, visits);
+        return visits[n - 1].size();
+    }
+
+    // How many cells the tail of every rope from 1 to n knots long visits, indexed by length, from one simulation.
+    // Knot i only follows the knots in front of it, so it is the tail of the rope i + 1 knots long.
+    long[] visitsByLength(Moves moves, int n) {
+        LongSet[] visits = new LongSet[n];
+        for (int i = 0; i < n; i++) {
+            visits[i] = new LongSet();
+        }
+        simulate(moves, n, visits);
+
+        long[] visitsByLength = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            visitsByLength[i + 1] = visits[i].size();
+        }
+        return visitsByLength;
+    }
+
+    // Runs each move as a whole rather than one list entry per step, recording the cells of every knot which has a set.
+    // A knot which doesn't move leaves every knot behind it where it was, so a step stops there; and once the whole
+    // rope has moved in step with the head it is stretched out straight behind it and will keep doing so, letting the
+    // rest of the move be done in one go.
+    private void simulate(Moves moves, int n, LongSet[] visits) {
+        // x of knot i at 2i and y at 2i + 1; everything starts at the origin
+        int[] knots = new int[2 * n];
+        for (LongSet visited : visits) {
+            if (visited != null) {
+                visited.add(pack(0, 0));
             }
+        }
 
-            // Record the last tails location
-            int[] lastKnot = knots[n - 1];
-            int tx = lastKnot[0];
-            int ty = lastKnot[1];
-            tailVisits.add(tx + "," + ty);
+        for (int m = 0; m < moves.size; m++) {
+            int dx = dxOf(moves.directions[m]);
+            int dy = dyOf(moves.directions[m]);
+            int steps = moves.steps[m];
+            while (steps > 0) {
+                steps--;
+                knots[0] += dx;
+                knots[1] += dy;
+                if (visits[0] != null) {
+                    visits[0].add(pack(knots[0], knots[1]));
+                }
+
+                // Tail knots react in turn
+                boolean inStep = true;
+                int i = 1;
+                for (; i < n; i++) {
+                    int x = knots[2 * i];
+                    int y = knots[2 * i + 1];
+                    if (!follow(knots, i)) {
+                        // This knot stood still, and so did all the ones behind it
+                        break;
+                    }
+                    inStep &= knots[2 * i] - x == dx && knots[2 * i + 1] - y == dy;
+                    if (visits[i] != null) {
+                        visits[i].add(pack(knots[2 * i], knots[2 * i + 1]));
+                    }
+                }
+
+                if (i == n && inStep && steps > 0) {
+                    for (int k = 0; k < n; k++) {
+                        if (visits[k] != null) {
+                            for (int s = 1; s <= steps; s++) {
+                                visits[k].add(pack(knots[2 * k] + (dx * s), knots[2 * k + 1] + (dy * s)));
+                            }
+                        }
+                        knots[2 * k] += dx * steps;
+                        knots[2 * k + 1] += dy * steps;
+                    }
+                    steps = 0;
+                }
+            }
         }
+    }
+
+    private int dxOf(byte direction) {
+        return direction == 'R' ? 1 : direction == 'L' ? -1 : 0;
+    }
+
+    private int dyOf(byte direction) {
+        return direction == 'U' ? 1 : direction == 'D' ? -1 : 0;
+    }
 
-        return tailVisits.size();
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
     }
 
-    private int[] follow(int hx, int hy, int tx, int ty) {
-        int dx = hx - tx;
-        int dy = hy - ty;
-
-        // Straight moves
-        if (dx == 2 && dy == 0) {
-            tx++;
-        } else if (dx == -2 && dy == 0) {
-            tx--;
-        } else if (dy == 2 && dx == 0) {
-            ty++;
-        } else if (dy == -2 && dx == 0) {
-            ty--;
-
-        } else if (dy == 2 && dx == 2) {
-            tx++;
-            ty++;
-
-        } else if (dy == -2 && dx == 2) {
-            tx++;
-            ty--;
-
-        } else if (dx == -2 && dy == 2) {
-            tx--;
-            ty++;
-
-        } else if (dx == -2 && dy == -2) {
-            tx--;
-            ty--;
-
-        } else if (dx == 2) {
-            tx++;
-            ty = hy;
-
-        } else if (dx == -2) {
-            tx--;
-            ty = hy;
-
-        } else if (dy == 2) {
-            ty++;
-            tx = hx;
-
-        } else if (dy == -2) {
-            ty--;
-            tx = hx;
+    // Knot i moves one step towards the knot in front whenever it is more than one away in either direction;
+    // false if it stayed where it was
+    private boolean follow(int[] knots, int i) {
+        int dx = knots[2 * i - 2] - knots[2 * i];
+        int dy = knots[2 * i - 1] - knots[2 * i + 1];
+        if (dx >= -1 && dx <= 1 && dy >= -1 && dy <= 1) {
+            return false;
         }
+        knots[2 * i] += Integer.signum(dx);
+        knots[2 * i + 1] += Integer.signum(dy);
+        return true;
+    }
 
-        return new int[]{tx, ty};
+    Moves loadMovesFile(String filename) throws IOException {
+        // Parse the file keeping each move as a direction and a number of steps
+        Moves moves = new Moves();
+        MappedInput input = MappedInput.open(filename);
+        while (input.skipWhitespace()) {
+            byte dir = (byte) input.next();
+            moves.add(dir, input.nextInt());
+        }
+        return moves;
     }
 
-    private List<Character> loadMovesFile(String filename) throws IOException {
-        // Parse the file and expand it into a sequence of single step moves
-        List<Character> moves = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        while (reader.ready()) {
-            String line = reader.readLine();
-            char dir = line.charAt(0);
-            int num = Integer.parseInt(line.split(" ")[1]);
-            for (int i = 0; i < num; i++) {
-                moves.add(dir);
+    class Moves {
+        byte[] directions = new byte[16];
+        int[] steps = new int[16];
+        int size = 0;
+
+        void add(byte direction, int count) {
+            if (size == directions.length) {
+                directions = Arrays.copyOf(directions, size * 2);
+                steps = Arrays.copyOf(steps, size * 2);
             }
+            directions[size] = direction;
+            steps[size] = count;
+            size++;
+        }
+    }
+
+    // Open addressing set of longs with linear probing, kept at most half full.
+    // Zero marks an empty slot so whether zero itself is in the set is kept to one side.
+    class LongSet {
+        private long[] keys = new long[64];
+        private int size = 0;
+        private boolean hasZero = false;
+
+        boolean add(long key) {
+            if (key == 0) {
+                if (hasZero) {
+                    return false;
+                }
+                hasZero = true;
+                return true;
+            }
+            int mask = keys.length - 1;
+            int slot = slotFor(key, mask);
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return true;
+        }
+
+        int size() {
+            return size + (hasZero ? 1 : 0);
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            int mask = keys.length - 1;
+            for (long key : old) {
+                if (key != 0) {
+                    int slot = slotFor(key, mask);
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = key;
+                }
+            }
+        }
+
+        // Neighbouring cells differ only in their low bits so spread them over the table
+        private int slotFor(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
         }
-        return moves;
     }
 
 }
@@ -0,0 +1,393 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A cursor over a memory mapped input file.
+// Numbers are parsed straight out of the mapped bytes and tokens are a reused view onto them,
+// so walking a file allocates nothing per line.
+public class MappedInput {
+
+    @Test
+    public void parsesSignsAndRanges() throws Exception {
+        MappedInput input = open(write("-5 2-4 x=-2 --3 7-"));
+        assertEquals(-5, input.nextLong());
+        // A minus after a digit separates a range
+        assertEquals(2, input.nextLong());
+        assertEquals(4, input.nextLong());
+        assertEquals(-2, input.nextLong());
+        // Only the minus next to the digits is a sign
+        assertEquals(-3, input.nextLong());
+        assertEquals(7, input.nextInt());
+        // A trailing minus is neither
+        assertTrue(input.hasRemaining());
+        assertThrowsNoSuchElement(input::nextLong);
+
+        MappedInput wrapped = wrap("-5 2-4".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(-5, wrapped.nextLong());
+        assertEquals(2, wrapped.nextLong());
+        assertEquals(-4, wrapped.slice(4, 6).nextLong());
+    }
+
+    @Test
+    public void slicesReadAsWholeInputs() throws Exception {
+        MappedInput input = open(write("12-4\nab"));
+        assertEquals(12, input.nextLong());
+        assertEquals(4, input.nextLong());
+
+        // Straight after a digit, but the slice can't see that so the minus is a sign
+        MappedInput slice = input.slice(2, 4);
+        assertEquals(2, slice.position());
+        assertEquals(4, slice.limit());
+        assertEquals(-4, slice.nextLong());
+        assertFalse(slice.hasRemaining());
+        // Slices don't move the cursor they were taken from
+        assertEquals(4, input.position());
+
+        MappedInput empty = input.slice(5, 5);
+        assertFalse(empty.skipWhitespace());
+        assertEquals(-1, empty.peek());
+        assertTrue(empty.atEndOfLine());
+
+        for (long[] bounds : new long[][]{{-1, 2}, {3, 2}, {0, 8}}) {
+            boolean refused = false;
+            try {
+                input.slice(bounds[0], bounds[1]);
+            } catch (IndexOutOfBoundsException expected) {
+                refused = true;
+            }
+            assertTrue(refused);
+        }
+        // The whole file is still the size of the mapping
+        assertEquals(7, input.slice(0, 7).size());
+    }
+
+    @Test
+    public void reusesTokens() throws Exception {
+        MappedInput input = open(write("noop\naddx 3\n"));
+        Token first = input.nextToken();
+        assertTrue(first.contentEquals("noop"));
+        assertFalse(first.contentEquals("noo"));
+        assertFalse(first.contentEquals("addx"));
+        String kept = first.toString();
+
+        // The next token is read into the same view
+        Token second = input.nextToken();
+        assertTrue(first == second);
+        assertTrue(second.contentEquals("addx"));
+        assertEquals("noop", kept);
+        assertEquals(4, second.length());
+        assertEquals('d', second.charAt(1));
+        assertEquals("dd", second.subSequence(1, 3).toString());
+        assertEquals(3, input.nextInt());
+        assertThrowsNoSuchElement(input::nextToken);
+    }
+
+    @Test
+    public void skipsToTheEnd() throws Exception {
+        MappedInput input = open(write("ab\ncd"));
+        assertTrue(input.skipLine());
+        assertEquals(3, input.position());
+        assertFalse(input.atEndOfLine());
+        assertFalse(input.skipUntil('x'));
+        assertEquals(input.limit(), input.position());
+        assertFalse(input.skipLine());
+        assertThrowsNoSuchElement(input::next);
+
+        MappedInput empty = open(write(""));
+        assertEquals(0, empty.size());
+        assertFalse(empty.hasRemaining());
+        assertFalse(empty.skipWhitespace());
+        assertEquals(-1, empty.peek());
+        assertThrowsNoSuchElement(empty::nextLong);
+    }
+
+    @Test
+    public void readsAcrossSegments() throws Exception {
+        String text = "1234567 89\nabcdefghij -1234\r\n";
+        // Segments of 4 bytes, so numbers and tokens are split between them
+        MappedInput input = open(write(text), 2);
+        assertEquals(text.length(), input.size());
+        for (int i = 0; i < text.length(); i++) {
+            assertEquals(text.charAt(i), input.byteAt(i));
+        }
+        assertEquals(1234567, input.nextLong());
+        assertEquals(89, input.nextLong());
+        assertEquals("abcdefghij", input.nextToken().toString());
+        assertEquals(-1234, input.nextLong());
+        assertTrue(input.atEndOfLine());
+        assertFalse(input.skipWhitespace());
+
+        MappedInput slice = input.slice(3, 14);
+        assertEquals(4567, slice.nextLong());
+        assertTrue(slice.nextToken().contentEquals("89"));
+        assertEquals("abc", slice.nextToken().toString());
+    }
+
+    private static String write(String text) throws IOException {
+        Path file = Files.createTempFile("mapped", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+        return file.toString();
+    }
+
+    private static void assertThrowsNoSuchElement(Runnable read) {
+        boolean threw = false;
+        try {
+            read.run();
+        } catch (NoSuchElementException expected) {
+            threw = true;
+        }
+        assertTrue(threw);
+    }
+
+    // A single mapping can't be larger than 2GB so big files are mapped as a run of 1GB segments
+    private static final int SEGMENT_SHIFT = 30;
+
+    private ByteBuffer[] segments;
+    private int segmentShift;
+    private long segmentMask;
+    private long size;
+    // The part of the file this cursor may read, [start, limit)
+    private long start;
+    private long limit;
+    private long position;
+    private final Token token = new Token();
+
+    // Only the factories below make these; this is also the constructor the tests are run with
+    MappedInput() {
+    }
+
+    private MappedInput(MappedInput mapping, long start, long limit) {
+        this.segments = mapping.segments;
+        this.segmentShift = mapping.segmentShift;
+        this.segmentMask = mapping.segmentMask;
+        this.size = mapping.size;
+        this.start = start;
+        this.position = start;
+        this.limit = limit;
+    }
+
+    public static MappedInput open(String filename) throws IOException {
+        return open(filename, SEGMENT_SHIFT);
+    }
+
+    // Segments of 2^segmentShift bytes; smaller than the default only to exercise reads across segment boundaries
+    static MappedInput open(String filename, int segmentShift) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            MappedInput input = new MappedInput();
+            input.segmentShift = segmentShift;
+            input.segmentMask = (1L << segmentShift) - 1;
+            input.size = channel.size();
+            input.limit = input.size;
+
+            int count = (int) ((input.size + input.segmentMask) >>> segmentShift);
+            input.segments = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long offset = (long) i << segmentShift;
+                input.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(1L << segmentShift, input.size - offset));
+            }
+            // The mapping stays valid after the channel is closed
+            return input;
+        }
+    }
+
+    // The same cursor over bytes already in memory; an array always fits in one segment
+    public static MappedInput wrap(byte[] bytes) {
+        MappedInput input = new MappedInput();
+        input.segmentShift = 31;
+        input.segmentMask = Integer.MAX_VALUE;
+        input.size = bytes.length;
+        input.limit = bytes.length;
+        input.segments = new ByteBuffer[]{ByteBuffer.wrap(bytes)};
+        return input;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    // A separate cursor over [from, to) of the same mapping; lets a file be split up and walked in parallel.
+    // The slice reads as if it were the whole input, so nothing before from affects how it parses.
+    public MappedInput slice(long from, long to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException(from + " - " + to);
+        }
+        return new MappedInput(this, from, to);
+    }
+
+    public long limit() {
+        return limit;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public void position(long position) {
+        this.position = position;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    // The next byte without consuming it; -1 at the end of the input
+    public int peek() {
+        return position < limit ? byteAt(position) : -1;
+    }
+
+    public int next() {
+        if (position >= limit) {
+            throw new NoSuchElementException();
+        }
+        return byteAt(position++);
+    }
+
+    public int byteAt(long at) {
+        return segments[(int) (at >>> segmentShift)].get((int) (at & segmentMask)) & 0xff;
+    }
+
+    // Steps over any whitespace; false if that was all there was left
+    public boolean skipWhitespace() {
+        while (position < limit && isWhitespace(byteAt(position))) {
+            position++;
+        }
+        return position < limit;
+    }
+
+    public boolean atEndOfLine() {
+        int c = peek();
+        return c == -1 || c == '\n' || c == '\r';
+    }
+
+    // Moves to just after the next occurrence of c; false if we ran out of input looking for it
+    public boolean skipUntil(char c) {
+        while (position < limit) {
+            if (byteAt(position++) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean skipLine() {
+        return skipUntil('\n');
+    }
+
+    // Skips anything which can't start a number then parses an optionally signed run of digits.
+    // A minus straight after a digit is a separator (as in 2-4) rather than a sign.
+    public long nextLong() {
+        while (position < limit) {
+            int c = byteAt(position);
+            if (isDigit(c) || (c == '-' && isSign(position))) {
+                break;
+            }
+            position++;
+        }
+        if (position >= limit) {
+            throw new NoSuchElementException();
+        }
+
+        boolean negative = byteAt(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        while (position < limit) {
+            int c = byteAt(position);
+            if (!isDigit(c)) {
+                break;
+            }
+            value = (value * 10) + (c - '0');
+            position++;
+        }
+        return negative ? -value : value;
+    }
+
+    public int nextInt() {
+        return Math.toIntExact(nextLong());
+    }
+
+    // The next whitespace delimited token. The returned view is reused by the next call so copy it with toString() to keep it.
+    public Token nextToken() {
+        if (!skipWhitespace()) {
+            throw new NoSuchElementException();
+        }
+        long start = position;
+        while (position < limit && !isWhitespace(byteAt(position))) {
+            position++;
+        }
+        token.start = start;
+        token.length = (int) (position - start);
+        return token;
+    }
+
+    private boolean isSign(long at) {
+        boolean followedByDigit = at + 1 < limit && isDigit(byteAt(at + 1));
+        boolean afterDigit = at > start && isDigit(byteAt(at - 1));
+        return followedByDigit && !afterDigit;
+    }
+
+    private boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    class Token implements CharSequence {
+        long start;
+        int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) byteAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        public boolean contentEquals(String s) {
+            if (s.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) != charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                out.append(charAt(i));
+            }
+            return out.toString();
+        }
+    }
+
+}